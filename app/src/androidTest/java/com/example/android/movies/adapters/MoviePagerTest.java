@@ -0,0 +1,290 @@
+package com.example.android.movies.adapters;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+
+import com.example.android.movies.data.MovieContract;
+import com.example.android.movies.data.MovieContract.MovieEntry;
+import com.example.android.movies.data.MovieContract.MovieRatingEntry;
+import com.example.android.movies.data.MovieDBHelper;
+import com.example.android.movies.data.MovieProvider;
+import com.example.android.movies.data.TestMovies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests the reads of {@link MoviePager} against a provider recording
+ * them: the count read from the list table, a page following one in
+ * memory read after its last rank and a page reached by a jump read from
+ * its offset, and the least recently shown page dropped once
+ * {@link MoviePager#MAX_PAGES} are in memory, its rows notified as
+ * placeholders again.
+ *
+ * @author Ali K Thabet
+ */
+public class MoviePagerTest extends InstrumentationTestCase {
+    private static final int PAGE_SIZE = MoviePager.PAGE_SIZE;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private RecordingProvider mProvider;
+    private MockContentResolver mResolver;
+    private Context mContext;
+    private MoviePager mPager;
+
+    // Notifications of the pager, e.g. "replaced 60 60"
+    private final List<String> mEvents = Collections.synchronizedList(new ArrayList<String>());
+
+    private final MoviePager.Listener mListener = new MoviePager.Listener() {
+        @Override
+        public void onCountChanged(int oldCount, int newCount) {
+            mEvents.add("count " + oldCount + " " + newCount);
+        }
+
+        @Override
+        public void onRowsReplaced(int start, int count) {
+            mEvents.add("replaced " + start + " " + count);
+        }
+
+        @Override
+        public void onRowsChanged(int start, int count) {
+            mEvents.add("changed " + start + " " + count);
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mResolver = new MockContentResolver();
+        mContext = new IsolatedContext(mResolver,
+                new RenamingDelegatingContext(getInstrumentation().getTargetContext(), "test."));
+        mContext.deleteDatabase(MovieDBHelper.DATABASE_NAME);
+
+        mProvider = new RecordingProvider();
+        mProvider.attachInfo(mContext, null);
+        mResolver.addProvider(MovieContract.CONTENT_AUTHORITY, mProvider);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mPager != null) {
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    mPager.close();
+                }
+            });
+        }
+        mProvider.shutdown();
+        super.tearDown();
+    }
+
+    public void testCountIsReadFromTheList() {
+        syncList(MovieEntry.CONTENT_URI, 150);
+        syncList(MovieRatingEntry.CONTENT_URI, 20);
+        mProvider.reset();
+
+        startPager(150);
+
+        assertEquals(Collections.singletonList(MovieContract.METHOD_COUNT_LIST), mProvider.getCalls());
+        assertTrue(mProvider.getQueries().isEmpty());
+        Bundle count = mResolver.call(MovieContract.BASE_CONTENT_URI, MovieContract.METHOD_COUNT_LIST,
+                MovieRatingEntry.CONTENT_URI.toString(), null);
+        assertNotNull(count);
+        assertEquals(20, count.getInt(MovieContract.EXTRA_COUNT));
+    }
+
+    public void testNextPageIsReadAfterTheLastRank() {
+        syncList(MovieEntry.CONTENT_URI, 5 * PAGE_SIZE);
+        startPager(5 * PAGE_SIZE);
+
+        // the first page has no page before it
+        loadAround(0, "replaced 0 60");
+        assertOffsetQuery(0);
+
+        // close enough to the next page to prefetch it
+        loadAround(PAGE_SIZE - 20, "replaced 60 60");
+        assertRankQuery(PAGE_SIZE - 1);
+
+        assertEquals(1, getId(0));
+        assertEquals(PAGE_SIZE + 1, getId(PAGE_SIZE));
+    }
+
+    public void testJumpIsReadFromTheOffset() {
+        syncList(MovieEntry.CONTENT_URI, 5 * PAGE_SIZE);
+        startPager(5 * PAGE_SIZE);
+        loadAround(0, "replaced 0 60");
+
+        loadAround(4 * PAGE_SIZE + 10, "replaced 240 60");
+        assertOffsetQuery(4 * PAGE_SIZE);
+
+        assertEquals(4 * PAGE_SIZE + 11, getId(4 * PAGE_SIZE + 10));
+        // the pages jumped over are placeholders
+        assertFalse(isLoaded(2 * PAGE_SIZE));
+        assertEquals(-1 - 2 * PAGE_SIZE, getId(2 * PAGE_SIZE));
+    }
+
+    public void testLeastRecentlyShownPageIsDropped() {
+        int pages = MoviePager.MAX_PAGES + 1;
+        syncList(MovieEntry.CONTENT_URI, (pages + 1) * PAGE_SIZE);
+        startPager((pages + 1) * PAGE_SIZE);
+        for (int page = 0; page < MoviePager.MAX_PAGES; page++) {
+            loadAround(page * PAGE_SIZE, "replaced " + page * PAGE_SIZE + " 60");
+        }
+
+        // the first page is shown again, the second is now the least recent
+        assertEquals(1, getId(0));
+        loadAround(MoviePager.MAX_PAGES * PAGE_SIZE, "replaced " + MoviePager.MAX_PAGES * PAGE_SIZE + " 60");
+
+        // notified along with the page loaded
+        assertTrue("No eviction in " + mEvents, mEvents.contains("replaced 60 60"));
+        assertFalse(isLoaded(PAGE_SIZE));
+        assertEquals(-1 - PAGE_SIZE, getId(PAGE_SIZE));
+        // shown in page order, the first page is now the least recent
+        assertTrue(isLoaded(0));
+        for (int page = 2; page < pages; page++) {
+            assertTrue("Page " + page, isLoaded(page * PAGE_SIZE));
+        }
+
+        // read again after the page before it, which is still in memory.
+        // Reading its last rank doesn't show it, so it is the one dropped.
+        loadAround(PAGE_SIZE, "replaced 60 60");
+        assertRankQuery(PAGE_SIZE - 1);
+        assertTrue("No eviction in " + mEvents, mEvents.contains("replaced 0 60"));
+        assertFalse(isLoaded(0));
+        assertTrue(isLoaded(2 * PAGE_SIZE));
+    }
+
+    // Writes count movies to the list, the ids 1 to count in rank order
+    private void syncList(Uri listUri, int count) {
+        Bundle extras = new Bundle();
+        TestMovies.batch(count, "").writeTo(extras);
+        Bundle stats = mResolver.call(MovieContract.BASE_CONTENT_URI, MovieContract.METHOD_SYNC_LIST,
+                listUri.toString(), extras);
+        assertNotNull(stats);
+    }
+
+    private void startPager(int count) {
+        mPager = new MoviePager(mContext, MovieEntry.CONTENT_URI);
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mPager.setListener(mListener);
+                mPager.start();
+            }
+        });
+        awaitEvent("count 0 " + count);
+    }
+
+    private void loadAround(final int position, String event) {
+        mEvents.clear();
+        mProvider.reset();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mPager.loadAround(position);
+            }
+        });
+        awaitEvent(event);
+        // the rest of the notifications of the page loaded
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private long getId(final int position) {
+        final long[] id = new long[1];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                id[0] = mPager.getId(position);
+            }
+        });
+        return id[0];
+    }
+
+    private boolean isLoaded(final int position) {
+        final boolean[] loaded = new boolean[1];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                loaded[0] = mPager.isLoaded(position);
+            }
+        });
+        return loaded[0];
+    }
+
+    // Waits for the pager to notify the event on the main thread
+    private void awaitEvent(String event) {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        while (!mEvents.contains(event)) {
+            assertTrue("No " + event + " in " + mEvents, SystemClock.uptimeMillis() < deadline);
+            SystemClock.sleep(10);
+        }
+    }
+
+    // Checks the only page read since the last load was read after the rank
+    private void assertRankQuery(long afterRank) {
+        Uri query = getOnlyQuery();
+        assertEquals(String.valueOf(afterRank), query.getQueryParameter(MovieContract.QUERY_AFTER_RANK));
+        assertNull(query.getQueryParameter(MovieContract.QUERY_OFFSET));
+    }
+
+    // Checks the only page read since the last load was read from the offset
+    private void assertOffsetQuery(int offset) {
+        Uri query = getOnlyQuery();
+        assertEquals(String.valueOf(offset), query.getQueryParameter(MovieContract.QUERY_OFFSET));
+        assertNull(query.getQueryParameter(MovieContract.QUERY_AFTER_RANK));
+    }
+
+    private Uri getOnlyQuery() {
+        List<Uri> queries = mProvider.getQueries();
+        assertEquals("Queries " + queries, 1, queries.size());
+        return queries.get(0);
+    }
+
+    /**
+     * Movie provider recording the uris queried and the methods called,
+     * from any thread.
+     */
+    public static class RecordingProvider extends MovieProvider {
+        private final List<Uri> mQueries = Collections.synchronizedList(new ArrayList<Uri>());
+        private final List<String> mCalls = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                            String sortOrder) {
+            mQueries.add(uri);
+            return super.query(uri, projection, selection, selectionArgs, sortOrder);
+        }
+
+        @Override
+        public Bundle call(String method, String arg, Bundle extras) {
+            mCalls.add(method);
+            return super.call(method, arg, extras);
+        }
+
+        List<Uri> getQueries() {
+            synchronized (mQueries) {
+                return new ArrayList<>(mQueries);
+            }
+        }
+
+        List<String> getCalls() {
+            synchronized (mCalls) {
+                return new ArrayList<>(mCalls);
+            }
+        }
+
+        void reset() {
+            mQueries.clear();
+            mCalls.clear();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.android.movies.data;
+
+import android.database.Cursor;
+import android.os.Debug;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.example.android.movies.adapters.MovieRows;
+import com.example.android.movies.data.MovieContract.MovieEntry;
+
+/**
+ * Counts the objects allocated on the paths that go over every movie:
+ * hashing a batch during a sync, and reading the rows of the grid. The
+ * hash and the numbers read by {@link MovieRowReader} must allocate
+ * nothing, and {@link MovieRows#fromCursor(Cursor)} no more than the
+ * strings of each row. Each path runs once before it is counted, so
+ * that class loading is left out.
+ *
+ * @author Ali K Thabet
+ */
+@SuppressWarnings("deprecation") // the allocation counters are the ones of API 15
+public class AllocationBenchmark extends ProviderTestCase2<MovieProvider> {
+    private static final String LOG_TAG = AllocationBenchmark.class.getSimpleName();
+
+    private static final int MOVIES = 1000;
+    // Title and poster of a row, each a string and, before Marshmallow,
+    // its array of chars
+    private static final int MAX_OBJECTS_PER_ROW = 4;
+    // The rows object, its arrays and the reader
+    private static final int MAX_OBJECTS_PER_READ = 10;
+
+    public AllocationBenchmark() {
+        super(MovieProvider.class, MovieContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getMockContext().deleteDatabase(MovieDBHelper.DATABASE_NAME);
+    }
+
+    public void testComputeHashAllocatesNothing() {
+        MovieBatch batch = TestMovies.batch(MOVIES, "");
+        hashAll(batch);
+
+        startCounting();
+        hashAll(batch);
+        int objects = stopCounting();
+
+        Log.i(LOG_TAG, "computeHash of " + MOVIES + " movies: " + objects + " objects");
+        assertEquals(0, objects);
+    }
+
+    public void testReaderAllocatesNothingForNumbers() {
+        Cursor cursor = queryMovies();
+        try {
+            MovieRowReader reader = new MovieRowReader(cursor);
+            readNumbers(reader);
+
+            startCounting();
+            readNumbers(reader);
+            int objects = stopCounting();
+
+            Log.i(LOG_TAG, "Numbers of " + MOVIES + " rows: " + objects + " objects");
+            assertEquals(0, objects);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testMovieRowsAllocatesOnlyTheStrings() {
+        Cursor cursor = queryMovies();
+        try {
+            MovieRows.fromCursor(cursor);
+
+            startCounting();
+            MovieRows rows = MovieRows.fromCursor(cursor);
+            int objects = stopCounting();
+            int bytes = Debug.getThreadAllocSize();
+
+            assertEquals(MOVIES, rows.size());
+            Log.i(LOG_TAG, "MovieRows of " + MOVIES + " rows: " + objects + " objects, "
+                    + (float) objects / MOVIES + " objects and " + bytes / MOVIES + " bytes per row");
+            assertTrue(objects + " objects",
+                    objects <= MOVIES * MAX_OBJECTS_PER_ROW + MAX_OBJECTS_PER_READ);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Returns the movies, with all of them already in the cursor window
+    private Cursor queryMovies() {
+        int written = getMockContentResolver().bulkInsert(MovieEntry.CONTENT_URI,
+                TestMovies.movies(MOVIES, ""));
+        assertEquals(MOVIES, written);
+
+        Cursor cursor = getMockContentResolver().query(MovieEntry.CONTENT_URI,
+                MovieContract.MOVIE_COLUMNS, null, null, null);
+        assertNotNull(cursor);
+        assertEquals(MOVIES, cursor.getCount());
+        return cursor;
+    }
+
+    private static long hashAll(MovieBatch batch) {
+        long hashes = 0;
+        for (int row = 0; row < batch.size(); row++) {
+            hashes += batch.computeHash(row);
+        }
+        return hashes;
+    }
+
+    private static double readNumbers(MovieRowReader reader) {
+        double sum = 0;
+        reader.moveToPosition(-1);
+        while (reader.moveToNext()) {
+            sum += reader.getId() + reader.getRating() + reader.getPopularity() + reader.getRank();
+        }
+        return sum;
+    }
+
+    private static void startCounting() {
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+    }
+
+    // Returns the objects allocated by this thread since startCounting
+    private static int stopCounting() {
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.android.movies.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.example.android.movies.data.MovieContract.MovieEntry;
+
+/**
+ * Throughput of {@link MovieProvider#bulkInsert} for lists of 20, 1,000
+ * and 50,000 movies, in rows per second. Each size is written three
+ * times, as a sync would: new movies are inserted, the same movies again
+ * are skipped by their hash, and changed movies are updated in place.
+ * The results are logged, the test only checks that every row landed.
+ *
+ * @author Ali K Thabet
+ */
+public class BulkInsertBenchmark extends ProviderTestCase2<MovieProvider> {
+    private static final String LOG_TAG = BulkInsertBenchmark.class.getSimpleName();
+
+    private static final int[] SIZES = {20, 1000, 50000};
+
+    public BulkInsertBenchmark() {
+        super(MovieProvider.class, MovieContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getMockContext().deleteDatabase(MovieDBHelper.DATABASE_NAME);
+    }
+
+    public void testBulkInsertThroughput() {
+        for (int size : SIZES) {
+            ContentValues[] movies = TestMovies.movies(size, "");
+            ContentValues[] changedMovies = TestMovies.movies(size, " (changed)");
+
+            long insertNanos = timeBulkInsert(movies);
+            long unchangedNanos = timeBulkInsert(movies);
+            long updateNanos = timeBulkInsert(changedMovies);
+
+            assertEquals("Rows in the list", size, countMovies());
+            Log.i(LOG_TAG, size + " movies, rows/s:"
+                    + " insert " + getRowsPerSecond(size, insertNanos)
+                    + ", unchanged " + getRowsPerSecond(size, unchangedNanos)
+                    + ", update " + getRowsPerSecond(size, updateNanos));
+
+            // start the next size from an empty list
+            getMockContentResolver().delete(MovieEntry.CONTENT_URI, null, null);
+        }
+    }
+
+    private long timeBulkInsert(ContentValues[] movies) {
+        long start = System.nanoTime();
+        int written = getMockContentResolver().bulkInsert(MovieEntry.CONTENT_URI, movies);
+        long elapsed = System.nanoTime() - start;
+        assertEquals("Rows written", movies.length, written);
+        return elapsed;
+    }
+
+    private int countMovies() {
+        Cursor cursor = getMockContentResolver().query(MovieEntry.CONTENT_URI,
+                new String[]{"COUNT(*)"}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long getRowsPerSecond(int rows, long nanos) {
+        return nanos > 0 ? rows * 1000000000L / nanos : 0;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.android.movies.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.example.android.movies.data.MovieContract.MovieEntry;
+import com.example.android.movies.data.MovieContract.MovieListEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that the database runs in write ahead logging mode, so the
+ * list queries of the UI are not blocked by the transaction of a sync.
+ * The latency of the first page of a list is measured while 10,000
+ * movies are written in parallel, and its 99th percentile must stay
+ * well below the time of the write.
+ *
+ * @author Ali K Thabet
+ */
+public class ConcurrentReadTest extends ProviderTestCase2<MovieProvider> {
+    private static final String LOG_TAG = ConcurrentReadTest.class.getSimpleName();
+
+    // Movies stored before the sync, and written by it
+    private static final int STORED_MOVIES = 1000;
+    private static final int SYNCED_MOVIES = 10000;
+    // Movies read by each query, a page of the grid
+    private static final int PAGE_SIZE = 60;
+    // Bound of the 99th percentile of the query latency
+    private static final long MAX_P99_MILLIS = 250;
+
+    public ConcurrentReadTest() {
+        super(MovieProvider.class, MovieContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getMockContext().deleteDatabase(MovieDBHelper.DATABASE_NAME);
+    }
+
+    public void testJournalModeIsWal() {
+        MovieDBHelper helper = new MovieDBHelper(getMockContext());
+        try {
+            SQLiteDatabase db = helper.getReadableDatabase();
+            assertEquals("wal", DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode", null));
+        } finally {
+            helper.close();
+        }
+    }
+
+    public void testCheckpointCopiesTheLog() {
+        // without automatic checkpoints, the log keeps every write
+        MovieDBHelper helper = new MovieDBHelper(getMockContext(), 0);
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (int id = 1; id <= STORED_MOVIES; id++) {
+                    ContentValues values = TestMovies.movie(id, "Movie " + id, 0);
+                    // the rank is a column of the list table
+                    values.remove(MovieListEntry.COLUMN_RANK);
+                    db.insertOrThrow(MovieEntry.TABLE_NAME, null, values);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            helper.checkpoint(MovieContract.CHECKPOINT_FULL);
+
+            // a checkpoint following it has nothing left to copy: its
+            // columns are busy, frames in the log and frames checkpointed
+            Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint", null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals("Busy", 0, cursor.getInt(0));
+                assertEquals("Frames not checkpointed", cursor.getInt(1), cursor.getInt(2));
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    public void testUnknownCheckpointModeIsRejected() {
+        MovieDBHelper helper = new MovieDBHelper(getMockContext());
+        try {
+            helper.checkpoint("TRUNCATE");
+            fail("Unknown mode accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        } finally {
+            helper.close();
+        }
+    }
+
+    public void testListQueryLatencyDuringSync() throws Exception {
+        syncList(TestMovies.batch(STORED_MOVIES, ""));
+
+        final MovieBatch syncedMovies = TestMovies.batch(SYNCED_MOVIES, " (changed)");
+        final Throwable[] writerError = new Throwable[1];
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    syncList(syncedMovies);
+                } catch (Throwable t) {
+                    writerError[0] = t;
+                }
+            }
+        });
+
+        List<Long> latencies = new ArrayList<>();
+        long start = System.nanoTime();
+        writer.start();
+        do {
+            latencies.add(timeFirstPage());
+        } while (writer.isAlive());
+        long writeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        writer.join();
+        if (writerError[0] != null) {
+            throw new AssertionError(writerError[0]);
+        }
+
+        Collections.sort(latencies);
+        long p99Millis = TimeUnit.NANOSECONDS.toMillis(
+                latencies.get((int) Math.ceil(latencies.size() * 0.99) - 1));
+        Log.i(LOG_TAG, latencies.size() + " queries during a write of " + writeMillis
+                + " ms, p99 " + p99Millis + " ms");
+        assertTrue("p99 of " + p99Millis + " ms", p99Millis <= MAX_P99_MILLIS);
+    }
+
+    // Reads the first page of the list to the end, returns the time it took
+    private long timeFirstPage() {
+        long start = System.nanoTime();
+        Cursor cursor = getMockContentResolver().query(
+                MovieContract.buildListPageUri(MovieEntry.CONTENT_URI, -1, PAGE_SIZE),
+                MovieContract.MOVIE_COLUMNS, null, null, null);
+        assertNotNull(cursor);
+        try {
+            while (cursor.moveToNext()) {
+                cursor.getString(MovieContract.COL_MOVIE_TITLE);
+            }
+        } finally {
+            cursor.close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void syncList(MovieBatch movies) {
+        Bundle extras = new Bundle();
+        movies.writeTo(extras);
+        Bundle stats = getMockContentResolver().call(MovieContract.BASE_CONTENT_URI,
+                MovieContract.METHOD_SYNC_LIST, MovieEntry.CONTENT_URI.toString(), extras);
+        assertNotNull(stats);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.android.movies.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+
+import com.example.android.movies.data.MovieContract.MovieEntry;
+import com.example.android.movies.data.MovieContract.MovieFavoriteEntry;
+import com.example.android.movies.data.MovieContract.MovieListEntry;
+
+/**
+ * Tests the insert of a movie into a list, as {@link FavoritesRepository}
+ * does when a movie is favorited. A movie already stored from another
+ * list must keep the columns the insert doesn't give, like the time its
+ * details were fetched, or the detail screen would fetch them again.
+ *
+ * @author Ali K Thabet
+ */
+public class FavoriteInsertTest extends ProviderTestCase2<MovieProvider> {
+    private static final long MOVIE_ID = 1;
+    private static final long FETCHED_AT = 1445000000000L;
+
+    public FavoriteInsertTest() {
+        super(MovieProvider.class, MovieContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getMockContext().deleteDatabase(MovieDBHelper.DATABASE_NAME);
+    }
+
+    public void testFavoriteToggleKeepsTheDetailsFetchTime() {
+        syncPopular();
+        storeDetails();
+
+        setFavorite(true);
+        assertEquals(FETCHED_AT, getFetchedAt(MovieFavoriteEntry.buildMovieUri(MOVIE_ID)));
+
+        // still in the popular list, so the movie stays
+        setFavorite(false);
+        assertEquals(FETCHED_AT, getFetchedAt(MovieEntry.buildMovieUri(MOVIE_ID)));
+
+        setFavorite(true);
+        assertEquals(FETCHED_AT, getFetchedAt(MovieFavoriteEntry.buildMovieUri(MOVIE_ID)));
+    }
+
+    public void testFavoriteUpdatesTheChangedColumns() {
+        syncPopular();
+        storeDetails();
+
+        ContentValues values = favoriteValues();
+        values.put(GeneralEntry.COLUMN_TITLE, "Movie 1 (changed)");
+        getMockContentResolver().insert(MovieFavoriteEntry.CONTENT_URI, values);
+
+        Cursor cursor = queryDetail(MovieEntry.buildMovieUri(MOVIE_ID));
+        try {
+            assertEquals("Movie 1 (changed)", cursor.getString(MovieContract.COL_MOVIE_TITLE));
+            assertEquals(FETCHED_AT, cursor.getLong(MovieContract.COL_DETAIL_FETCHED_AT));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testNewFavoriteIsStored() {
+        setFavorite(true);
+
+        Cursor cursor = queryDetail(MovieFavoriteEntry.buildMovieUri(MOVIE_ID));
+        try {
+            assertEquals("Movie 1", cursor.getString(MovieContract.COL_MOVIE_TITLE));
+            // never fetched
+            assertTrue(cursor.isNull(MovieContract.COL_DETAIL_FETCHED_AT));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void syncPopular() {
+        Bundle extras = new Bundle();
+        TestMovies.batch(3, "").writeTo(extras);
+        Bundle stats = getMockContentResolver().call(MovieContract.BASE_CONTENT_URI,
+                MovieContract.METHOD_SYNC_LIST, MovieEntry.CONTENT_URI.toString(), extras);
+        assertNotNull(stats);
+    }
+
+    // Records the details of the movie as fetched at FETCHED_AT
+    private void storeDetails() {
+        Bundle extras = new Bundle();
+        extras.putLong(MovieContract.EXTRA_FETCHED_AT, FETCHED_AT);
+        getMockContentResolver().call(MovieContract.BASE_CONTENT_URI,
+                MovieContract.METHOD_STORE_DETAILS, String.valueOf(MOVIE_ID), extras);
+        assertEquals(FETCHED_AT, getFetchedAt(MovieEntry.buildMovieUri(MOVIE_ID)));
+    }
+
+    // Writes the favorite as FavoritesRepository does
+    private void setFavorite(boolean favorite) {
+        if (favorite) {
+            getMockContentResolver().insert(MovieFavoriteEntry.CONTENT_URI, favoriteValues());
+        } else {
+            getMockContentResolver().delete(MovieFavoriteEntry.buildMovieUri(MOVIE_ID), null, null);
+        }
+    }
+
+    // Values of the movie as the detail screen has them, without a rank
+    private static ContentValues favoriteValues() {
+        ContentValues values = TestMovies.movie(MOVIE_ID, "Movie 1", 0);
+        values.remove(MovieListEntry.COLUMN_RANK);
+        return values;
+    }
+
+    private long getFetchedAt(Uri movieUri) {
+        Cursor cursor = queryDetail(movieUri);
+        try {
+            assertFalse("Never fetched", cursor.isNull(MovieContract.COL_DETAIL_FETCHED_AT));
+            return cursor.getLong(MovieContract.COL_DETAIL_FETCHED_AT);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Returns the movie of the list, positioned on its row
+    private Cursor queryDetail(Uri movieUri) {
+        Cursor cursor = getMockContentResolver().query(movieUri, MovieContract.DETAIL_COLUMNS,
+                null, null, null);
+        assertNotNull(cursor);
+        assertTrue("Not in the list: " + movieUri, cursor.moveToFirst());
+        return cursor;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.android.movies.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+
+import com.example.android.movies.data.MovieContract.MovieEntry;
+import com.example.android.movies.data.MovieContract.MovieListEntry;
+
+/**
+ * Tests the list writes of the sync, {@link MovieContract#METHOD_SYNC_LIST},
+ * with a batch holding the same movie twice, as it does when a movie moves
+ * to the next page while the pages are fetched.
+ *
+ * @author Ali K Thabet
+ */
+public class ListDeltaTest extends ProviderTestCase2<MovieProvider> {
+
+    public ListDeltaTest() {
+        super(MovieProvider.class, MovieContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getMockContext().deleteDatabase(MovieDBHelper.DATABASE_NAME);
+    }
+
+    public void testDuplicateKeepsItsFirstRank() {
+        MovieBatch batch = new MovieBatch(4);
+        batch.add(TestMovies.movie(1, "Movie 1", 0));
+        batch.add(TestMovies.movie(2, "Movie 2", 1));
+        batch.add(TestMovies.movie(1, "Movie 1", 2));
+        batch.add(TestMovies.movie(3, "Movie 3", 3));
+
+        Bundle stats = syncList(batch);
+
+        assertEquals(3, stats.getInt(MovieContract.STAT_INSERTED));
+        assertRanks(new long[]{1, 2, 3}, new long[]{0, 1, 3});
+    }
+
+    public void testDuplicateWithoutRankTakesNoRank() {
+        MovieBatch batch = new MovieBatch(4);
+        batch.add(withoutRank(1));
+        batch.add(withoutRank(2));
+        batch.add(withoutRank(1));
+        batch.add(withoutRank(3));
+
+        Bundle stats = syncList(batch);
+
+        assertEquals(3, stats.getInt(MovieContract.STAT_INSERTED));
+        // appended in order, without a hole for the duplicate
+        assertRanks(new long[]{1, 2, 3}, new long[]{0, 1, 2});
+    }
+
+    public void testDuplicateOfStoredMovieIsUnchanged() {
+        syncList(TestMovies.batch(2, ""));
+
+        MovieBatch batch = TestMovies.batch(2, "");
+        batch.add(TestMovies.movie(1, "Movie 1", 2));
+        Bundle stats = syncList(batch);
+
+        assertEquals(0, stats.getInt(MovieContract.STAT_INSERTED));
+        assertEquals(0, stats.getInt(MovieContract.STAT_UPDATED));
+        assertEquals(2, stats.getInt(MovieContract.STAT_UNCHANGED));
+        assertRanks(new long[]{1, 2}, new long[]{0, 1});
+    }
+
+    private static ContentValues withoutRank(long id) {
+        ContentValues values = TestMovies.movie(id, "Movie " + id, 0);
+        values.remove(MovieListEntry.COLUMN_RANK);
+        return values;
+    }
+
+    private Bundle syncList(MovieBatch movies) {
+        Bundle extras = new Bundle();
+        movies.writeTo(extras);
+        Bundle stats = getMockContentResolver().call(MovieContract.BASE_CONTENT_URI,
+                MovieContract.METHOD_SYNC_LIST, MovieEntry.CONTENT_URI.toString(), extras);
+        assertNotNull(stats);
+        return stats;
+    }
+
+    // Checks the movies of the list, in rank order
+    private void assertRanks(long[] ids, long[] ranks) {
+        Cursor cursor = getMockContentResolver().query(MovieEntry.CONTENT_URI,
+                MovieContract.MOVIE_COLUMNS, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertEquals(ids.length, cursor.getCount());
+            for (int i = 0; cursor.moveToNext(); i++) {
+                assertEquals("Id at " + i, ids[i], cursor.getLong(MovieContract.COL_MOVIE_ID));
+                assertEquals("Rank at " + i, ranks[i], cursor.getLong(MovieContract.COL_MOVIE_RANK));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.android.movies.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Upgrades recorded databases of the versions 27 to 31 to the current
+ * one. The fixtures are SQL dumps, in the test resources, of the schema
+ * of each version with the same movies: three popular ones, two top
+ * rated and two favorites, one movie being in all the lists, and from
+ * version 28 a review and a trailer. Every upgrade must keep the lists
+ * in their order, the favorites above all, and end with the schema of
+ * a new database.
+ *
+ * @author Ali K Thabet
+ */
+public class MigrationTest extends AndroidTestCase {
+    private static final String FIXTURE = "/fixtures/movie_v%d.sql";
+
+    // Movies of the fixtures, by list in rank order
+    private static final long[] POPULAR = {101, 102, 103};
+    private static final long[] TOP_RATED = {201, 103};
+    private static final long[] FAVORITES = {301, 103};
+
+    // Times the details of the movies were fetched, from version 28
+    private static final long REVIEW_FETCHED_AT = 1446000000000L;
+    private static final long TRAILER_FETCHED_AT = 1446000500000L;
+
+    private Context mContext;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = new RenamingDelegatingContext(getContext(), "test.");
+        mContext.deleteDatabase(MovieDBHelper.DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(MovieDBHelper.DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testUpgradeFrom27() throws IOException {
+        checkUpgrade(27);
+    }
+
+    public void testUpgradeFrom28() throws IOException {
+        checkUpgrade(28);
+    }
+
+    public void testUpgradeFrom29() throws IOException {
+        checkUpgrade(29);
+    }
+
+    public void testUpgradeFrom30() throws IOException {
+        checkUpgrade(30);
+    }
+
+    public void testUpgradeFrom31() throws IOException {
+        checkUpgrade(31);
+    }
+
+    private void checkUpgrade(int version) throws IOException {
+        createFixture(version);
+
+        MovieDBHelper helper = new MovieDBHelper(mContext);
+        try {
+            SQLiteDatabase db = helper.getReadableDatabase();
+
+            assertEquals(5, queryLong(db, "SELECT COUNT(*) FROM movie"));
+            assertList(db, MovieContract.MovieEntry.LIST_NAME, POPULAR);
+            assertList(db, MovieContract.MovieRatingEntry.LIST_NAME, TOP_RATED);
+            assertList(db, MovieContract.MovieFavoriteEntry.LIST_NAME, FAVORITES);
+
+            // posters are kept as their path relative to the image URLs
+            assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM movie WHERE poster NOT LIKE '/p%.jpg'"));
+
+            // the search index covers the movies of every list
+            assertEquals(1, queryLong(db, "SELECT COUNT(*) FROM movie_search WHERE movie_search MATCH 'amelie'"));
+
+            if (version >= 28) {
+                assertEquals(1, queryLong(db, "SELECT COUNT(*) FROM review WHERE movie_id = 103"));
+                assertEquals(1, queryLong(db, "SELECT COUNT(*) FROM trailer WHERE movie_id = 101"));
+                assertEquals(REVIEW_FETCHED_AT, queryLong(db, "SELECT details_fetched_at FROM movie WHERE _id = 103"));
+                assertEquals(TRAILER_FETCHED_AT, queryLong(db, "SELECT details_fetched_at FROM movie WHERE _id = 101"));
+            }
+            assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM movie WHERE _id = 102 AND details_fetched_at IS NOT NULL"));
+
+            assertSameSchema(db);
+        } finally {
+            helper.close();
+        }
+    }
+
+    // Writes the fixture of the version as the database of the helper
+    private void createFixture(int version) throws IOException {
+        String name = String.format(FIXTURE, version);
+        InputStream in = getClass().getResourceAsStream(name);
+        assertNotNull("Missing fixture " + name, in);
+
+        SQLiteDatabase db = mContext.openOrCreateDatabase(MovieDBHelper.DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            db.beginTransaction();
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // one statement per line, and comments
+                    if (!line.isEmpty() && !line.startsWith("--")) {
+                        db.execSQL(line);
+                    }
+                }
+                db.setVersion(version);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            db.close();
+            in.close();
+        }
+    }
+
+    // Compares the tables, columns, indexes and triggers with those of a new database
+    private void assertSameSchema(SQLiteDatabase upgraded) {
+        Context freshContext = new RenamingDelegatingContext(getContext(), "test.fresh.");
+        freshContext.deleteDatabase(MovieDBHelper.DATABASE_NAME);
+        MovieDBHelper freshHelper = new MovieDBHelper(freshContext);
+        try {
+            SQLiteDatabase fresh = freshHelper.getReadableDatabase();
+            Set<String> names = getSchemaNames(fresh);
+            assertEquals(names, getSchemaNames(upgraded));
+            for (String table : getTables(fresh)) {
+                assertEquals("Columns of " + table, getColumns(fresh, table), getColumns(upgraded, table));
+            }
+        } finally {
+            freshHelper.close();
+            freshContext.deleteDatabase(MovieDBHelper.DATABASE_NAME);
+        }
+    }
+
+    private static void assertList(SQLiteDatabase db, String listName, long[] ids) {
+        Cursor cursor = db.rawQuery("SELECT movie_id FROM movie_list WHERE list = ? ORDER BY rank",
+                new String[]{listName});
+        try {
+            long[] found = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                found[i] = cursor.getLong(0);
+            }
+            assertTrue("List " + listName + ": " + Arrays.toString(found), Arrays.equals(ids, found));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long queryLong(SQLiteDatabase db, String sql) {
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Types and names of the tables, indexes and triggers, without those of SQLite
+    private static Set<String> getSchemaNames(SQLiteDatabase db) {
+        Set<String> names = new HashSet<>();
+        Cursor cursor = db.rawQuery("SELECT type, name FROM sqlite_master " +
+                "WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata'", null);
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0) + " " + cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    private static List<String> getTables(SQLiteDatabase db) {
+        List<String> tables = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' " +
+                "AND name NOT LIKE 'sqlite_%' AND name != 'android_metadata'", null);
+        try {
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return tables;
+    }
+
+    // Name, type, not null constraint and primary key of each column
+    private static List<String> getColumns(SQLiteDatabase db, String table) {
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(1) + " " + cursor.getString(2)
+                        + " " + cursor.getInt(3) + " " + cursor.getInt(5));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+}
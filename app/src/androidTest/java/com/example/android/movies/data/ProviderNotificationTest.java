@@ -0,0 +1,136 @@
+package com.example.android.movies.data;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+
+import com.example.android.movies.data.MovieContract.MovieEntry;
+
+import java.util.List;
+
+/**
+ * Counts the change notifications of {@link MovieProvider} that reach
+ * the popular list. Each of them reloads every loader showing the list,
+ * so reads must not notify at all and a sync at most once.
+ *
+ * @author Ali K Thabet
+ */
+public class ProviderNotificationTest extends AndroidTestCase {
+    private static final int MOVIES = 100;
+
+    private CountingResolver mResolver;
+    private MovieProvider mProvider;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mResolver = new CountingResolver(MovieEntry.CONTENT_URI);
+        Context context = new IsolatedContext(mResolver,
+                new RenamingDelegatingContext(getContext(), "test."));
+        context.deleteDatabase(MovieDBHelper.DATABASE_NAME);
+
+        mProvider = new MovieProvider();
+        mProvider.attachInfo(context, null);
+        mResolver.addProvider(MovieContract.CONTENT_AUTHORITY, mProvider);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mProvider.shutdown();
+        super.tearDown();
+    }
+
+    public void testReadsDoNotNotify() {
+        syncList("");
+        mResolver.reset();
+
+        close(mResolver.query(MovieEntry.CONTENT_URI, MovieContract.MOVIE_COLUMNS, null, null, null));
+        close(mResolver.query(MovieEntry.buildMovieUri(1), MovieContract.DETAIL_COLUMNS, null, null, null));
+        close(mResolver.query(MovieContract.buildListPageUri(MovieEntry.CONTENT_URI, 19, 20),
+                MovieContract.MOVIE_COLUMNS, null, null, null));
+
+        assertEquals(0, mResolver.getCount());
+    }
+
+    public void testFirstSyncNotifiesOnce() {
+        syncList("");
+
+        assertEquals(1, mResolver.getCount());
+    }
+
+    public void testUnchangedSyncDoesNotNotify() {
+        syncList("");
+        mResolver.reset();
+
+        syncList("");
+
+        assertEquals(0, mResolver.getCount());
+    }
+
+    public void testChangedSyncNotifiesOnce() {
+        syncList("");
+        mResolver.reset();
+
+        syncList(" (changed)");
+
+        assertEquals(1, mResolver.getCount());
+    }
+
+    // Writes the movies to the list the way the sync adapter does
+    private void syncList(String titleSuffix) {
+        Bundle extras = new Bundle();
+        TestMovies.batch(MOVIES, titleSuffix).writeTo(extras);
+        Bundle stats = mResolver.call(MovieContract.BASE_CONTENT_URI, MovieContract.METHOD_SYNC_LIST,
+                MovieEntry.CONTENT_URI.toString(), extras);
+        assertNotNull(stats);
+        assertEquals(MOVIES, stats.getInt(MovieContract.STAT_FETCHED));
+    }
+
+    private static void close(Cursor cursor) {
+        assertNotNull(cursor);
+        cursor.close();
+    }
+
+    // Resolver of the isolated provider, counting the notifications an
+    // observer of the watched uri and its descendants would receive
+    private static class CountingResolver extends MockContentResolver {
+        private final Uri mWatchedUri;
+        private int mCount;
+
+        CountingResolver(Uri watchedUri) {
+            mWatchedUri = watchedUri;
+        }
+
+        @Override
+        public void notifyChange(Uri uri, ContentObserver observer, boolean syncToNetwork) {
+            if (isRelated(uri, mWatchedUri)) {
+                mCount++;
+            }
+        }
+
+        int getCount() {
+            return mCount;
+        }
+
+        void reset() {
+            mCount = 0;
+        }
+
+        // Whether one uri is the other or one of its ancestors
+        private static boolean isRelated(Uri a, Uri b) {
+            if (!a.getAuthority().equals(b.getAuthority())) {
+                return false;
+            }
+            List<String> aPath = a.getPathSegments();
+            List<String> bPath = b.getPathSegments();
+            int common = Math.min(aPath.size(), bPath.size());
+            return aPath.subList(0, common).equals(bPath.subList(0, common));
+        }
+    }
+}
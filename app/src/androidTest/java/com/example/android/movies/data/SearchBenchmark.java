@@ -0,0 +1,127 @@
+package com.example.android.movies.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.example.android.movies.data.MovieContract.MovieEntry;
+import com.example.android.movies.data.MovieContract.SearchEntry;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the search of {@link MovieProvider} over a catalogue of
+ * 50,000 movies, from a query matching a few movies to one matching
+ * thousands. Each query runs as the search screen does, reading the
+ * first page of results, and its median time must stay within a few
+ * milliseconds. The median and the maximum of each query are logged.
+ *
+ * @author Ali K Thabet
+ */
+public class SearchBenchmark extends ProviderTestCase2<MovieProvider> {
+    private static final String LOG_TAG = SearchBenchmark.class.getSimpleName();
+
+    private static final int MOVIES = 50000;
+    private static final int RUNS = 50;
+    // Bound of the median latency of a query
+    private static final long MAX_MEDIAN_MILLIS = 10;
+
+    // Words of the titles: each adjective and each noun is in 1 title
+    // of 40, and each pair of them in 1 title of 1,600
+    private static final String[] ADJECTIVES = {
+            "Dark", "Silent", "Golden", "Last", "Broken", "Hidden", "Lost", "Wild", "Secret", "Cold",
+            "Red", "Final", "Endless", "Burning", "Quiet", "Savage", "Frozen", "Fallen", "Crimson", "Electric",
+            "Iron", "Pale", "Bright", "Hollow", "Restless", "Distant", "Violent", "Sudden", "Bitter", "Sacred",
+            "Wicked", "Empty", "Brave", "Lonely", "Midnight", "Rising", "Shadow", "Stolen", "Twisted", "Velvet"
+    };
+    private static final String[] NOUNS = {
+            "Night", "River", "Empire", "Garden", "Horizon", "Mirror", "Harbor", "Kingdom", "Signal", "Storm",
+            "Promise", "Frontier", "Witness", "Machine", "Island", "Orchard", "Voyage", "Season", "Circle", "Anthem",
+            "Desert", "Legacy", "Harvest", "Station", "Crossing", "Letter", "Mountain", "Shore", "Echo", "Planet",
+            "Heart", "Bridge", "Canyon", "Lantern", "Prophet", "Sister", "Soldier", "Tower", "Winter", "Valley"
+    };
+
+    // Queries typed in the search, by number of matches
+    private static final String[] QUERIES = {
+            "Dark Night 1", // 11 titles, the number being a prefix
+            "dark night", // 32 titles
+            "tokyo", // a word of 100 synopses
+            "storm", // a word of 1,250 titles
+            "sh", // a prefix of 2,500 titles
+    };
+
+    public SearchBenchmark() {
+        super(MovieProvider.class, MovieContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getMockContext().deleteDatabase(MovieDBHelper.DATABASE_NAME);
+    }
+
+    public void testSearchLatency() {
+        int written = getMockContentResolver().bulkInsert(MovieEntry.CONTENT_URI, buildMovies());
+        assertEquals("Rows written", MOVIES, written);
+
+        for (String query : QUERIES) {
+            // the first run warms the page cache, as the text typed before would
+            assertTrue("No result for " + query, timeSearch(query) >= 0);
+
+            long[] latencies = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                latencies[run] = timeSearch(query);
+            }
+            Arrays.sort(latencies);
+            long medianMillis = TimeUnit.NANOSECONDS.toMillis(latencies[RUNS / 2]);
+            Log.i(LOG_TAG, "\"" + query + "\" over " + MOVIES + " movies: median "
+                    + TimeUnit.NANOSECONDS.toMicros(latencies[RUNS / 2]) + " us, max "
+                    + TimeUnit.NANOSECONDS.toMicros(latencies[RUNS - 1]) + " us");
+            assertTrue("Median of " + medianMillis + " ms for " + query,
+                    medianMillis <= MAX_MEDIAN_MILLIS);
+        }
+    }
+
+    // Movies named by an adjective, a noun and a number, set in a city
+    // of 500, Tokyo being the first
+    private static ContentValues[] buildMovies() {
+        String[] cities = new String[500];
+        cities[0] = "Tokyo";
+        for (int i = 1; i < cities.length; i++) {
+            cities[i] = "City" + i;
+        }
+
+        ContentValues[] movies = new ContentValues[MOVIES];
+        for (int i = 0; i < MOVIES; i++) {
+            String title = ADJECTIVES[i % ADJECTIVES.length] + " "
+                    + NOUNS[i / ADJECTIVES.length % NOUNS.length] + " "
+                    + (i / (ADJECTIVES.length * NOUNS.length) + 1);
+            movies[i] = TestMovies.movie(i + 1, title, i);
+            movies[i].put(GeneralEntry.COLUMN_SYNOPSIS,
+                    "A story set in " + cities[i % cities.length] + ".");
+        }
+        return movies;
+    }
+
+    // Reads the first page of results to the end, returns the time it
+    // took, or -1 if nothing matched
+    private long timeSearch(String text) {
+        long start = System.nanoTime();
+        Cursor cursor = getMockContentResolver().query(SearchEntry.buildSearchUri(text),
+                MovieContract.MOVIE_COLUMNS, null, null, null);
+        assertNotNull(cursor);
+        try {
+            if (cursor.getCount() == 0) {
+                return -1;
+            }
+            while (cursor.moveToNext()) {
+                cursor.getString(MovieContract.COL_MOVIE_TITLE);
+            }
+        } finally {
+            cursor.close();
+        }
+        return System.nanoTime() - start;
+    }
+}
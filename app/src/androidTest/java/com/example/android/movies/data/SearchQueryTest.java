@@ -0,0 +1,103 @@
+package com.example.android.movies.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.ProviderTestCase2;
+
+import com.example.android.movies.data.MovieContract.MovieEntry;
+import com.example.android.movies.data.MovieContract.SearchEntry;
+
+/**
+ * Tests the FTS queries built from the text typed by the user: the
+ * characters of the FTS syntax must be dropped, text without a word
+ * must not query at all, and the words of any script must be kept.
+ *
+ * @author Ali K Thabet
+ */
+public class SearchQueryTest extends ProviderTestCase2<MovieProvider> {
+    // Titles written in Unicode escapes: Amelie with an accent, and
+    // Spirited Away in Japanese, a single word for the FTS tokenizer
+    private static final String AMELIE = "Am\u00e9lie";
+    private static final String SPIRITED_AWAY = "\u5343\u3068\u5343\u5c0b\u306e\u795e\u96a0\u3057";
+
+    public SearchQueryTest() {
+        super(MovieProvider.class, MovieContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getMockContext().deleteDatabase(MovieDBHelper.DATABASE_NAME);
+    }
+
+    public void testEveryWordIsAPrefix() {
+        assertEquals("star* wars*", MovieProvider.buildMatchQuery("star wars"));
+        assertEquals("star* wars*", MovieProvider.buildMatchQuery("  star   wars "));
+    }
+
+    public void testPunctuationSeparatesWords() {
+        assertEquals("Spider* Man*", MovieProvider.buildMatchQuery("Spider-Man"));
+        assertEquals("Star* Wars* The* Force*", MovieProvider.buildMatchQuery("Star Wars: The Force"));
+        assertEquals("WALL* E*", MovieProvider.buildMatchQuery("WALL\u00b7E"));
+        assertEquals("Mission* Impossible* 2*", MovieProvider.buildMatchQuery("Mission: Impossible 2"));
+    }
+
+    public void testSyntaxOfFtsIsDropped() {
+        assertEquals("title* alien*", MovieProvider.buildMatchQuery("title:alien"));
+        assertEquals("alien* aliens*", MovieProvider.buildMatchQuery("\"alien\" -aliens*"));
+        assertEquals("alien*", MovieProvider.buildMatchQuery("(alien"));
+    }
+
+    public void testEmptyInputHasNoQuery() {
+        assertNull(MovieProvider.buildMatchQuery(null));
+        assertNull(MovieProvider.buildMatchQuery(""));
+        assertNull(MovieProvider.buildMatchQuery("   "));
+        assertNull(MovieProvider.buildMatchQuery("\"*-:()"));
+    }
+
+    public void testNonLatinWordsAreKept() {
+        assertEquals(AMELIE + "*", MovieProvider.buildMatchQuery(AMELIE));
+        assertEquals("\u0411\u0440\u0430\u0442*", MovieProvider.buildMatchQuery("\u0411\u0440\u0430\u0442"));
+        assertEquals(SPIRITED_AWAY + "*", MovieProvider.buildMatchQuery(SPIRITED_AWAY));
+        assertEquals("L\u00e9on* \u6771\u4eac*", MovieProvider.buildMatchQuery("L\u00e9on, \u6771\u4eac!"));
+    }
+
+    public void testEmptyInputFindsNothing() {
+        insertMovie(1, "The Martian");
+
+        assertEquals(0, countResults(""));
+        assertEquals(0, countResults("?!"));
+    }
+
+    public void testPunctuatedInputFindsTheMovie() {
+        insertMovie(1, "Spider-Man");
+
+        assertEquals(1, countResults("spider-man"));
+        assertEquals(1, countResults("\"spider"));
+        assertEquals(1, countResults("man:"));
+    }
+
+    public void testNonLatinInputFindsTheMovie() {
+        insertMovie(1, AMELIE);
+        insertMovie(2, SPIRITED_AWAY);
+
+        assertEquals(1, countResults(AMELIE.substring(0, 4)));
+        assertEquals(1, countResults(SPIRITED_AWAY.substring(0, 4)));
+    }
+
+    private void insertMovie(long id, String title) {
+        ContentValues values = TestMovies.movie(id, title, id - 1);
+        getMockContentResolver().insert(MovieEntry.CONTENT_URI, values);
+    }
+
+    private int countResults(String text) {
+        Cursor cursor = getMockContentResolver().query(SearchEntry.buildSearchUri(text),
+                MovieContract.MOVIE_COLUMNS, null, null, null);
+        assertNotNull(cursor);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
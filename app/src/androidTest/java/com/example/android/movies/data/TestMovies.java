@@ -0,0 +1,58 @@
+package com.example.android.movies.data;
+
+import android.content.ContentValues;
+
+import com.example.android.movies.data.MovieContract.MovieListEntry;
+
+/**
+ * Movie rows for the tests of the provider, shaped like the rows of a
+ * synced list: every movie has all the columns and its rank in the list.
+ *
+ * @author Ali K Thabet
+ */
+public class TestMovies {
+    // Relative poster path, as stored by the sync
+    public static final String POSTER = "/poster.jpg";
+
+    private TestMovies() {
+    }
+
+    /**
+     * @return the values of a movie at the given rank
+     */
+    public static ContentValues movie(long id, String title, long rank) {
+        ContentValues values = new ContentValues();
+        values.put(GeneralEntry._ID, id);
+        values.put(GeneralEntry.COLUMN_TITLE, title);
+        values.put(GeneralEntry.COLUMN_RELEASE_DATE, "2015-10-02");
+        values.put(GeneralEntry.COLUMN_RATING, 7.5);
+        values.put(GeneralEntry.COLUMN_POPULARITY, 1000.0 - rank);
+        values.put(GeneralEntry.COLUMN_SYNOPSIS, "Synopsis of " + title);
+        values.put(GeneralEntry.COLUMN_POSTER, POSTER);
+        values.put(MovieListEntry.COLUMN_RANK, rank);
+        return values;
+    }
+
+    /**
+     * @return count movies with the ids 1 to count, at the ranks 0 to count - 1.
+     * Their titles end with the suffix, so the same movies can be written changed.
+     */
+    public static ContentValues[] movies(int count, String titleSuffix) {
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = movie(i + 1, "Movie " + (i + 1) + titleSuffix, i);
+        }
+        return values;
+    }
+
+    /**
+     * @return the same movies as {@link #movies(int, String)}, as a batch
+     */
+    public static MovieBatch batch(int count, String titleSuffix) {
+        MovieBatch batch = new MovieBatch(count);
+        for (ContentValues values : movies(count, titleSuffix)) {
+            batch.add(values);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.android.movies.images;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.movies.R;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import com.squareup.picasso.Picasso;
+
+import java.io.ByteArrayOutputStream;
+
+import okio.Buffer;
+
+/**
+ * Measures the bitmap of a poster shown in a grid cell of this device,
+ * loaded by {@link ImageLoader}, against the loads it replaced: the
+ * w185 poster and the poster of the size now fetched, both decoded
+ * whole in ARGB_8888 by a default Picasso. The posters are JPEGs of the
+ * TMDB widths served by a local mock server, and the byte counts of the
+ * bitmaps are logged.
+ * <p>
+ * The poster must be decoded to the cell in RGB_565, so it never takes
+ * more than half the memory of the poster fetched. Against the w185
+ * poster, which the grid scaled up, it is smaller only on cells of less
+ * than about 260 pixels, so that comparison is logged, not checked.
+ *
+ * @author Ali K Thabet
+ */
+public class PosterMemoryBenchmark extends AndroidTestCase {
+    private static final String LOG_TAG = PosterMemoryBenchmark.class.getSimpleName();
+
+    // Poster of the mock server, under the size segment of the TMDB URLs
+    private static final String POSTER_PATH = "/t/p/w185/poster.jpg";
+    // Width served for the original size
+    private static final int ORIGINAL_WIDTH = 2000;
+
+    private MockWebServer mServer;
+    private Picasso mLegacyPicasso;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(new Buffer().write(buildPoster(getWidth(request.getPath()))));
+            }
+        });
+        mServer.start();
+        // the loader of the grid before ImageLoader
+        mLegacyPicasso = new Picasso.Builder(getContext()).build();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mLegacyPicasso.shutdown();
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    public void testGridPosterIsDecodedToTheCell() throws Exception {
+        // the first width of the cells, before the grid is measured
+        int columns = getContext().getResources().getInteger(R.integer.grid_columns);
+        int cellWidth = getContext().getResources().getDisplayMetrics().widthPixels / columns;
+        String w185Url = mServer.url(POSTER_PATH).toString();
+        String fetchedUrl = PosterUrl.forWidth(w185Url, cellWidth);
+
+        Bitmap poster = ImageLoader.getInstance(getContext()).loadPoster(w185Url, cellWidth, null).get();
+        Bitmap w185 = mLegacyPicasso.load(w185Url).get();
+        Bitmap fetched = mLegacyPicasso.load(fetchedUrl).get();
+
+        Log.i(LOG_TAG, "Cell of " + cellWidth + " px, " + PosterUrl.getSize(cellWidth) + " fetched: "
+                + poster.getByteCount() + " bytes, against " + w185.getByteCount() + " bytes for w185 and "
+                + fetched.getByteCount() + " bytes for " + PosterUrl.getSize(cellWidth) + " in ARGB_8888");
+        assertEquals(Bitmap.Config.RGB_565, poster.getConfig());
+        assertEquals(cellWidth, poster.getWidth());
+        assertEquals(ImageLoader.getPosterHeight(cellWidth), poster.getHeight());
+        assertTrue(poster.getByteCount() + " bytes against " + fetched.getByteCount(),
+                poster.getByteCount() * 2 <= fetched.getByteCount());
+    }
+
+    // Width of the poster of the size named in the path, e.g. w342
+    private static int getWidth(String path) {
+        String size = path.substring(path.indexOf("/t/p/") + "/t/p/".length(), path.lastIndexOf('/'));
+        return size.startsWith("w") ? Integer.parseInt(size.substring(1)) : ORIGINAL_WIDTH;
+    }
+
+    // A JPEG poster of the width, with the aspect of the TMDB posters
+    private static byte[] buildPoster(int width) {
+        int height = ImageLoader.getPosterHeight(width);
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.DKGRAY);
+        Paint paint = new Paint();
+        paint.setColor(Color.YELLOW);
+        canvas.drawCircle(width / 2f, height / 2f, width / 3f, paint);
+
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, jpeg);
+        bitmap.recycle();
+        return jpeg.toByteArray();
+    }
+}
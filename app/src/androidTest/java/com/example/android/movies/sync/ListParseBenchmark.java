@@ -0,0 +1,138 @@
+package com.example.android.movies.sync;
+
+import android.content.ContentValues;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.movies.models.MovieItem;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the objects and bytes allocated to parse a recorded page of the
+ * popular list, by {@link MovieListParser} and by the parsing it
+ * replaced, which read the whole body into a StringBuffer, built an
+ * org.json tree of it and a {@link MovieItem} per movie. Both read the
+ * same bytes as a response stream, and each runs once before it is
+ * counted, so that class loading is left out. The streaming parser must
+ * allocate fewer objects and fewer bytes per page.
+ *
+ * @author Ali K Thabet
+ */
+@SuppressWarnings("deprecation") // the allocation counters are the ones of API 15
+public class ListParseBenchmark extends AndroidTestCase {
+    private static final String LOG_TAG = ListParseBenchmark.class.getSimpleName();
+
+    private static final String FIXTURE = "/fixtures/popular_page_2.json";
+    private static final int PAGE = 2;
+    // Movies of the fixture with a poster
+    private static final int MOVIES = 19;
+    // Pages parsed by each path while counting
+    private static final int RUNS = 10;
+
+    // Poster prefix the old parsing stored with every movie
+    private static final String POSTER_URL = "http://image.tmdb.org/t/p/w185";
+
+    public void testStreamingParserAllocatesLess() throws Exception {
+        byte[] body = readFixture();
+        assertEquals(MOVIES, parseStreaming(body));
+        assertEquals(MOVIES, parseLegacy(body));
+
+        startCounting();
+        for (int run = 0; run < RUNS; run++) {
+            parseStreaming(body);
+        }
+        int streamingObjects = stopCounting() / RUNS;
+        int streamingBytes = Debug.getThreadAllocSize() / RUNS;
+
+        startCounting();
+        for (int run = 0; run < RUNS; run++) {
+            parseLegacy(body);
+        }
+        int legacyObjects = stopCounting() / RUNS;
+        int legacyBytes = Debug.getThreadAllocSize() / RUNS;
+
+        Log.i(LOG_TAG, "Page of " + body.length + " bytes, per page: streaming "
+                + streamingObjects + " objects, " + streamingBytes + " bytes; StringBuffer and org.json "
+                + legacyObjects + " objects, " + legacyBytes + " bytes");
+        assertTrue(streamingObjects + " objects against " + legacyObjects,
+                streamingObjects < legacyObjects);
+        assertTrue(streamingBytes + " bytes against " + legacyBytes,
+                streamingBytes < legacyBytes);
+    }
+
+    private int parseStreaming(byte[] body) throws IOException {
+        return new MovieListParser().parse(new ByteArrayInputStream(body), PAGE).getMovies().size();
+    }
+
+    // The parsing of the sync before MovieListParser, as it read a response
+    private int parseLegacy(byte[] body) throws IOException, JSONException {
+        InputStream inputStream = new ByteArrayInputStream(body);
+        StringBuffer buffer = new StringBuffer();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            buffer.append(line + "\n");
+        }
+
+        JSONObject movieJson = new JSONObject(buffer.toString());
+        JSONArray movieArray = movieJson.getJSONArray(MovieItem.MDB_LIST);
+        List<ContentValues> cVList = new ArrayList<>(movieArray.length());
+        for (int i = 0; i < movieArray.length(); i++) {
+            MovieItem temp = new MovieItem();
+            JSONObject movie = movieArray.getJSONObject(i);
+            temp.setId(movie.getInt(MovieItem.MDB_ID));
+            temp.setTitle(movie.getString(MovieItem.MDB_TITLE));
+            if (movie.getString(MovieItem.MDB_POSTER).equals("null")) {
+                continue;
+            }
+            temp.setPosterPath(POSTER_URL + movie.getString(MovieItem.MDB_POSTER));
+            temp.setReleaseDate(movie.getString(MovieItem.MDB_REL_DATE));
+            temp.setSynopsis(movie.getString(MovieItem.MDB_SYNP));
+            temp.setRating(movie.getDouble(MovieItem.MDB_RATING));
+            temp.setPopularity(movie.getDouble(MovieItem.MDB_POPULARITY));
+            cVList.add(temp.getContentValues());
+        }
+        return cVList.size();
+    }
+
+    private byte[] readFixture() throws IOException {
+        InputStream in = getClass().getResourceAsStream(FIXTURE);
+        assertNotNull("Missing fixture " + FIXTURE, in);
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return body.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void startCounting() {
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+    }
+
+    // Returns the objects allocated by this thread since startCounting
+    private static int stopCounting() {
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+}
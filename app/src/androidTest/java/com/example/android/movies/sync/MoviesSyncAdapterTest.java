@@ -0,0 +1,259 @@
+package com.example.android.movies.sync;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+import android.content.SyncResult;
+import android.database.Cursor;
+import android.test.ProviderTestCase2;
+
+import com.example.android.movies.api.MovieDBClient;
+import com.example.android.movies.data.MovieBatch;
+import com.example.android.movies.data.MovieContract;
+import com.example.android.movies.data.MovieDBHelper;
+import com.example.android.movies.data.MovieProvider;
+import com.example.android.movies.models.MovieItem;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests the page fetching of {@link MoviesSyncAdapter} against a local
+ * mock server. The adapter runs on an isolated provider database and
+ * its own preferences, so the data of the app is left untouched.
+ *
+ * @author Ali K Thabet
+ */
+public class MoviesSyncAdapterTest extends ProviderTestCase2<MovieProvider> {
+    private static final String SORT_BY = "popular";
+    private static final String API_KEY = "test_key";
+    private static final String ETAG = "\"page-1\"";
+
+    // Prefix of the preferences of the adapter under test
+    private static final String TEST_PREFIX = "test.";
+
+    private MockWebServer mServer;
+    private MoviesSyncAdapter mSyncAdapter;
+
+    public MoviesSyncAdapterTest() {
+        super(MovieProvider.class, MovieContract.CONTENT_AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getMockContext().deleteDatabase(MovieDBHelper.DATABASE_NAME);
+        // responses of previous tests must not answer the requests of this one
+        MovieDBClient.getInstance(getContext()).getHttpClient().getCache().evictAll();
+
+        mServer = new MockWebServer();
+        mServer.start();
+        mSyncAdapter = new MoviesSyncAdapter(new SyncContext(getContext()), false);
+        mSyncAdapter.setBaseUrl(mServer.url("/3/movie").toString());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    public void testOkResponseIsParsed() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(buildPage(2, 21, 22, 23)));
+        SyncResult syncResult = new SyncResult();
+
+        MoviesSyncAdapter.FetchedPage page = mSyncAdapter.getData(SORT_BY, API_KEY, "2", syncResult);
+
+        assertNotNull(page);
+        assertEquals(3, page.getTotalPages());
+        MovieBatch movies = page.getMovies();
+        assertEquals(3, movies.size());
+        assertEquals(21, movies.getId(0));
+        // ranks follow the page: page 2 starts after the 20 movies of page 1
+        assertEquals(20, movies.getRank(0));
+        assertEquals(22, movies.getRank(2));
+        assertFalse(syncResult.hasError());
+
+        RecordedRequest request = mServer.takeRequest();
+        assertEquals("/3/movie/" + SORT_BY + "?api_key=" + API_KEY + "&page=2", request.getPath());
+    }
+
+    public void testNotModifiedResponseIsNotParsed() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+        SyncResult syncResult = new SyncResult();
+
+        MoviesSyncAdapter.FetchedPage page = mSyncAdapter.getData(SORT_BY, API_KEY, "1", syncResult);
+
+        assertSame(MoviesSyncAdapter.NOT_MODIFIED, page);
+        assertFalse(syncResult.hasError());
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    public void testTooManyRequestsIsRetried() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        mServer.enqueue(new MockResponse().setBody(buildPage(1, 1, 2)));
+        SyncResult syncResult = new SyncResult();
+
+        MoviesSyncAdapter.FetchedPage page = mSyncAdapter.getData(SORT_BY, API_KEY, "1", syncResult);
+
+        assertNotNull(page);
+        assertEquals(2, page.getMovies().size());
+        assertFalse(syncResult.hasError());
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    public void testServerErrorIsRetried() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        mServer.enqueue(new MockResponse().setBody(buildPage(1, 1, 2)));
+        SyncResult syncResult = new SyncResult();
+
+        MoviesSyncAdapter.FetchedPage page = mSyncAdapter.getData(SORT_BY, API_KEY, "1", syncResult);
+
+        assertNotNull(page);
+        assertEquals(2, page.getMovies().size());
+        assertFalse(syncResult.hasError());
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    public void testPersistentServerErrorIsCounted() throws Exception {
+        // every attempt fails, the Retry-After only keeps the test short
+        for (int i = 0; i < 4; i++) {
+            mServer.enqueue(new MockResponse().setResponseCode(500).setHeader("Retry-After", "0"));
+        }
+        SyncResult syncResult = new SyncResult();
+
+        MoviesSyncAdapter.FetchedPage page = mSyncAdapter.getData(SORT_BY, API_KEY, "1", syncResult);
+
+        assertNull(page);
+        assertEquals(1, syncResult.stats.numIoExceptions);
+        assertEquals(4, mServer.getRequestCount());
+    }
+
+    public void testMalformedNumberIsCounted() throws Exception {
+        // an id that is not an integer
+        String body = buildPage(1, 1, 2).replace(key(MovieItem.MDB_ID) + "2", key(MovieItem.MDB_ID) + "2.5");
+        mServer.enqueue(new MockResponse().setBody(body));
+        SyncResult syncResult = new SyncResult();
+
+        MoviesSyncAdapter.FetchedPage page = mSyncAdapter.getData(SORT_BY, API_KEY, "1", syncResult);
+
+        assertNull(page);
+        assertEquals(1, syncResult.stats.numParseExceptions);
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    public void testStoredPageIsRequestedWithItsValidators() throws Exception {
+        mServer.enqueue(pageWithETag());
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+
+        mSyncAdapter.syncSinglePage(SORT_BY, 1, new SyncResult());
+        SyncResult syncResult = new SyncResult();
+        mSyncAdapter.syncSinglePage(SORT_BY, 1, syncResult);
+
+        assertNull(mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals(ETAG, mServer.takeRequest().getHeader("If-None-Match"));
+        // the 304 writes nothing
+        assertEquals(0, syncResult.stats.numEntries);
+        assertEquals(3, countMovies());
+    }
+
+    public void testPartiallyStoredPageIsRequestedWithoutValidators() throws Exception {
+        mServer.enqueue(pageWithETag());
+        mServer.enqueue(pageWithETag());
+
+        mSyncAdapter.syncSinglePage(SORT_BY, 1, new SyncResult());
+        getMockContentResolver().delete(MovieContract.MovieEntry.buildMovieUri(2), null, null);
+        mSyncAdapter.syncSinglePage(SORT_BY, 1, new SyncResult());
+
+        mServer.takeRequest();
+        assertNull(mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals(3, countMovies());
+    }
+
+    public void testFailedPageStoresNoValidators() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            mServer.enqueue(new MockResponse().setResponseCode(500).setHeader("Retry-After", "0")
+                    .setHeader("ETag", ETAG));
+        }
+        mServer.enqueue(new MockResponse().setBody(buildPage(1, 1, 2, 3)));
+
+        mSyncAdapter.syncSinglePage(SORT_BY, 1, new SyncResult());
+        mSyncAdapter.syncSinglePage(SORT_BY, 1, new SyncResult());
+
+        for (int i = 0; i < 4; i++) {
+            mServer.takeRequest();
+        }
+        assertNull(mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals(3, countMovies());
+    }
+
+    // First page with validators, kept out of the HTTP cache, which
+    // would otherwise revalidate it with its own conditional request
+    private static MockResponse pageWithETag() {
+        return new MockResponse().setBody(buildPage(1, 1, 2, 3))
+                .setHeader("ETag", ETAG)
+                .setHeader("Cache-Control", "no-store");
+    }
+
+    private int countMovies() {
+        Cursor cursor = getMockContentResolver().query(MovieContract.MovieEntry.CONTENT_URI,
+                new String[]{"COUNT(*)"}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Body of a list page with a movie per id, under the keys read by
+    // MovieListParser
+    static String buildPage(int page, long... ids) {
+        StringBuilder json = new StringBuilder("{\"page\":").append(page)
+                .append(",\"").append(MovieItem.MDB_LIST).append("\":[");
+        for (int i = 0; i < ids.length; i++) {
+            json.append(i == 0 ? "{" : ",{")
+                    .append(key(MovieItem.MDB_ID)).append(ids[i])
+                    .append(',').append(key(MovieItem.MDB_TITLE)).append("\"Movie ").append(ids[i]).append('"')
+                    .append(',').append(key(MovieItem.MDB_POSTER)).append("\"/poster").append(ids[i]).append(".jpg\"")
+                    .append(',').append(key(MovieItem.MDB_SYNP)).append("\"Synopsis\"")
+                    .append(',').append(key(MovieItem.MDB_REL_DATE)).append("\"2015-10-02\"")
+                    .append(',').append(key(MovieItem.MDB_RATING)).append("7.5")
+                    .append(',').append(key(MovieItem.MDB_POPULARITY)).append("12.5}");
+        }
+        return json.append("],\"total_pages\":3,\"total_results\":60}").toString();
+    }
+
+    private static String key(String name) {
+        return "\"" + name + "\":";
+    }
+
+    // Context of the adapter: the isolated provider and preferences of its own
+    private class SyncContext extends ContextWrapper {
+        private final Set<String> mClearedPrefs = new HashSet<>();
+
+        SyncContext(Context base) {
+            super(base);
+        }
+
+        @Override
+        public ContentResolver getContentResolver() {
+            return getMockContentResolver();
+        }
+
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            SharedPreferences prefs = super.getSharedPreferences(TEST_PREFIX + name, mode);
+            // left by a previous test
+            if (mClearedPrefs.add(name)) {
+                prefs.edit().clear().commit();
+            }
+            return prefs;
+        }
+    }
+}
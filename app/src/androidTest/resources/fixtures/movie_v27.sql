@@ -0,0 +1,12 @@
+-- Database of version 27 (three movie tables, one per list), as the app of that version wrote it.
+-- One statement per line, posters are still full URLs.
+CREATE TABLE movie (_id INTEGER PRIMARY KEY,title TEXT NOT NULL, release_date TEXT, rating REAL, popularity REAL, synopsis TEXT, poster TEXT, thumb TEXT, UNIQUE (_id) ON CONFLICT REPLACE);
+CREATE TABLE movie_rating (_id INTEGER PRIMARY KEY,title TEXT NOT NULL, release_date TEXT, rating REAL, popularity REAL, synopsis TEXT, poster TEXT, thumb TEXT, UNIQUE (_id) ON CONFLICT REPLACE);
+CREATE TABLE movie_favorite (_id INTEGER PRIMARY KEY,title TEXT NOT NULL, release_date TEXT, rating REAL, popularity REAL, synopsis TEXT, poster TEXT, thumb TEXT, UNIQUE (_id) ON CONFLICT REPLACE);
+INSERT INTO movie (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (101, 'The Martian', '2015-10-02', 7.6, 55.2, 'An astronaut is stranded on Mars.', 'http://image.tmdb.org/t/p/w185/p101.jpg', NULL);
+INSERT INTO movie (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (102, 'Spectre', '2015-11-06', 6.3, 48.1, 'A cryptic message sends Bond to Mexico City.', 'http://image.tmdb.org/t/p/w185/p102.jpg', NULL);
+INSERT INTO movie (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (103, 'Interstellar', '2014-11-05', 8.2, 30.4, 'Explorers travel through a wormhole.', 'http://image.tmdb.org/t/p/w185/p103.jpg', NULL);
+INSERT INTO movie_rating (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (201, 'Whiplash', '2014-10-10', 8.4, 10.7, 'A young drummer enrolls at a music conservatory.', 'http://image.tmdb.org/t/p/w185/p201.jpg', NULL);
+INSERT INTO movie_rating (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (103, 'Interstellar', '2014-11-05', 8.2, 30.4, 'Explorers travel through a wormhole.', 'http://image.tmdb.org/t/p/w185/p103.jpg', NULL);
+INSERT INTO movie_favorite (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (301, 'Amelie', '2001-04-25', 7.8, 6.2, 'A shy waitress decides to change the lives of those around her.', 'http://image.tmdb.org/t/p/w185/p301.jpg', NULL);
+INSERT INTO movie_favorite (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (103, 'Interstellar', '2014-11-05', 8.2, 30.4, 'Explorers travel through a wormhole.', 'http://image.tmdb.org/t/p/w185/p103.jpg', NULL);
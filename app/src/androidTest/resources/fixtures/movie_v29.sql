@@ -0,0 +1,22 @@
+-- Database of version 29 (lists merged into movie_list), as the app of that version wrote it.
+-- One statement per line, posters are still full URLs.
+CREATE TABLE movie (_id INTEGER PRIMARY KEY,title TEXT NOT NULL, release_date TEXT, rating REAL, popularity REAL, synopsis TEXT, poster TEXT, thumb TEXT, UNIQUE (_id) ON CONFLICT REPLACE);
+CREATE TABLE movie_list (list TEXT NOT NULL, movie_id INTEGER NOT NULL, rank INTEGER NOT NULL, UNIQUE (list, movie_id) ON CONFLICT REPLACE, UNIQUE (list, rank) ON CONFLICT REPLACE);
+CREATE INDEX movie_list_rank_idx ON movie_list (list, rank, movie_id);
+CREATE INDEX movie_list_movie_idx ON movie_list (movie_id, list);
+CREATE TABLE review (_id INTEGER PRIMARY KEY AUTOINCREMENT,movie_id INTEGER NOT NULL, review_id TEXT NOT NULL, author TEXT, content TEXT, fetched_at INTEGER NOT NULL, UNIQUE (movie_id, review_id) ON CONFLICT REPLACE);
+CREATE TABLE trailer (_id INTEGER PRIMARY KEY AUTOINCREMENT,movie_id INTEGER NOT NULL, trailer_id TEXT NOT NULL, key TEXT NOT NULL, name TEXT, site TEXT, type TEXT, fetched_at INTEGER NOT NULL, UNIQUE (movie_id, trailer_id) ON CONFLICT REPLACE);
+INSERT INTO movie (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (101, 'The Martian', '2015-10-02', 7.6, 55.2, 'An astronaut is stranded on Mars.', 'http://image.tmdb.org/t/p/w185/p101.jpg', NULL);
+INSERT INTO movie (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (102, 'Spectre', '2015-11-06', 6.3, 48.1, 'A cryptic message sends Bond to Mexico City.', 'http://image.tmdb.org/t/p/w185/p102.jpg', NULL);
+INSERT INTO movie (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (103, 'Interstellar', '2014-11-05', 8.2, 30.4, 'Explorers travel through a wormhole.', 'http://image.tmdb.org/t/p/w185/p103.jpg', NULL);
+INSERT INTO movie (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (201, 'Whiplash', '2014-10-10', 8.4, 10.7, 'A young drummer enrolls at a music conservatory.', 'http://image.tmdb.org/t/p/w185/p201.jpg', NULL);
+INSERT INTO movie (_id, title, release_date, rating, popularity, synopsis, poster, thumb) VALUES (301, 'Amelie', '2001-04-25', 7.8, 6.2, 'A shy waitress decides to change the lives of those around her.', 'http://image.tmdb.org/t/p/w185/p301.jpg', NULL);
+INSERT INTO movie_list (list, movie_id, rank) VALUES ('popular', 101, 0);
+INSERT INTO movie_list (list, movie_id, rank) VALUES ('popular', 102, 1);
+INSERT INTO movie_list (list, movie_id, rank) VALUES ('popular', 103, 2);
+INSERT INTO movie_list (list, movie_id, rank) VALUES ('top_rated', 201, 0);
+INSERT INTO movie_list (list, movie_id, rank) VALUES ('top_rated', 103, 1);
+INSERT INTO movie_list (list, movie_id, rank) VALUES ('favorite', 301, 0);
+INSERT INTO movie_list (list, movie_id, rank) VALUES ('favorite', 103, 1);
+INSERT INTO review (movie_id, review_id, author, content, fetched_at) VALUES (103, '5488c29bc3a3686f4a00004a', 'Travis Bell', 'Great movie.', 1446000000000);
+INSERT INTO trailer (movie_id, trailer_id, key, name, site, type, fetched_at) VALUES (101, '5589c4c1c3a3680f2f00029f', 'ej3ioOneTy8', 'Official Trailer', 'YouTube', 'Trailer', 1446000500000);
@@ -1,9 +1,12 @@
 package com.example.android.movies;
 
+import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Color;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
@@ -25,26 +28,27 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import com.example.android.movies.api.MovieDBApi;
-import com.example.android.movies.api.results.ReviewResults;
-import com.example.android.movies.api.results.TrailerResults;
+import com.example.android.movies.api.MovieDBClient;
+import com.example.android.movies.api.RequestCoalescer;
+import com.example.android.movies.api.results.MovieDetailResults;
+import com.example.android.movies.data.FavoritesRepository;
 import com.example.android.movies.data.MovieContract;
+import com.example.android.movies.data.MovieContract.ReviewEntry;
+import com.example.android.movies.data.MovieContract.TrailerEntry;
+import com.example.android.movies.images.ImageLoader;
 import com.example.android.movies.models.MovieItem;
 import com.example.android.movies.models.Review;
 import com.example.android.movies.models.Trailer;
-import com.squareup.picasso.Picasso;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
 import retrofit.Call;
-import retrofit.Callback;
-import retrofit.GsonConverterFactory;
-import retrofit.Response;
-import retrofit.Retrofit;
 
 /**
  * This fragment will display the details of the
@@ -52,13 +56,21 @@ import retrofit.Retrofit;
  *
  * @author Ali K Thabet
  */
-public class DetailFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class DetailFragment extends Fragment
+        implements LoaderManager.LoaderCallbacks<Cursor>, FavoritesRepository.Listener {
     private final String LOG_TAG = DetailFragment.class.getSimpleName();
     private static final int DETAIL_LOADER = 0;
+    private static final int REVIEW_LOADER = 1;
+    private static final int TRAILER_LOADER = 2;
+
+    // The details of a movie, with its reviews and trailers, are only
+    // fetched again from MovieDB once they are older than this
+    private static final long DETAIL_TTL = TimeUnit.HOURS.toMillis(24);
 
     public static final String DETAIL_URI = "URI";
 
     private Uri mUri;
+    private long mMovieId;
 
     private ViewHolder viewHolder;
     private LayoutInflater mInflater;
@@ -68,6 +80,8 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     private MovieItem mMovieItem;
     private List<String> mAllReviews =  new ArrayList<>();
     private Map<String,Trailer> mAllTrailers =  new HashMap<>();
+    private List<RequestCoalescer.Handle> mPendingRequests = new ArrayList<>();
+    private boolean mDetailsRequested;
 
     public DetailFragment() {
         setHasOptionsMenu(true);
@@ -82,6 +96,9 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
         if (arguments != null) {
             mUri = arguments.getParcelable(DetailFragment.DETAIL_URI);
         }
+        if (mUri != null) {
+            mMovieId = ContentUris.parseId(mUri);
+        }
 
         View rootView = mInflater.inflate(R.layout.fragment_detail, container, false);
         viewHolder = new ViewHolder(rootView);
@@ -89,6 +106,33 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
         return rootView;
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        FavoritesRepository favorites = FavoritesRepository.getInstance(getActivity());
+        favorites.addListener(this);
+        favorites.load();
+    }
+
+    @Override
+    public void onStop() {
+        FavoritesRepository.getInstance(getActivity()).removeListener(this);
+        super.onStop();
+    }
+
+    // The favorites were loaded or changed, e.g. from another screen
+    @Override
+    public void onFavoritesChanged() {
+        if (mMovieItem == null) {
+            return;
+        }
+        boolean favorite = FavoritesRepository.getInstance(getActivity()).isFavorite(mMovieItem.getId());
+        mMovieItem.setFavorite(favorite);
+        if (viewHolder.favoriteBox.isChecked() != favorite) {
+            viewHolder.favoriteBox.setChecked(favorite);
+        }
+    }
+
     @Override
     public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
         // Inflate the menu; this adds items to the action bar if it is present.
@@ -118,104 +162,178 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         getLoaderManager().initLoader(DETAIL_LOADER, null, this);
+        if (mUri != null) {
+            getLoaderManager().initLoader(REVIEW_LOADER, null, this);
+            getLoaderManager().initLoader(TRAILER_LOADER, null, this);
+        }
         super.onActivityCreated(savedInstanceState);
     }
 
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        if (mUri != null) {
-            return new CursorLoader(getActivity(),
-                    mUri,
-                    MovieContract.MOVIE_COLUMNS,
-                    null,
-                    null,
-                    null);
+        if (mUri == null) {
+            return null;
+        }
+        switch (id) {
+            case REVIEW_LOADER:
+                return new CursorLoader(getActivity(),
+                        ReviewEntry.buildMovieReviewsUri(mMovieId),
+                        MovieContract.REVIEW_COLUMNS,
+                        null,
+                        null,
+                        ReviewEntry._ID + " ASC");
+            case TRAILER_LOADER:
+                return new CursorLoader(getActivity(),
+                        TrailerEntry.buildMovieTrailersUri(mMovieId),
+                        MovieContract.TRAILER_COLUMNS,
+                        null,
+                        null,
+                        TrailerEntry._ID + " ASC");
+            default:
+                return new CursorLoader(getActivity(),
+                        mUri,
+                        MovieContract.DETAIL_COLUMNS,
+                        null,
+                        null,
+                        null);
         }
-        return null;
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        if (data!= null && !data.moveToFirst()) { return; }
+        if (data == null) { return; }
+        switch (loader.getId()) {
+            case REVIEW_LOADER:
+                onReviewsLoaded(data);
+                break;
+            case TRAILER_LOADER:
+                onTrailersLoaded(data);
+                break;
+            default:
+                onMovieLoaded(data);
+        }
+    }
+
+    private void onMovieLoaded(Cursor data) {
+        if (!data.moveToFirst()) { return; }
         Log.d(LOG_TAG, "Loading...");
         mMovieItem = new MovieItem(data);
 
-        // check if movie is favorite
-        Cursor favoriteCursor = queryFavorite();
-
-        if (favoriteCursor.moveToNext()) {
-            mMovieItem.setFavorite(true);
-        } else {
-            mMovieItem.setFavorite(false);
-        }
+        // check if movie is favorite, in memory. If the favorites are
+        // still loading, the box is updated once they are loaded.
+        mMovieItem.setFavorite(FavoritesRepository.getInstance(getActivity()).isFavorite(mMovieItem.getId()));
 
         // set the main view
         setMainView();
-        getReviews(Integer.toString(mMovieItem.getId()));
-        getTrailers(Integer.toString(mMovieItem.getId()));
-    }
-
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
 
+        if (!mDetailsRequested && isStale(data)) {
+            mDetailsRequested = true;
+            getDetails(Long.toString(mMovieId));
+        }
     }
 
-    private void getReviews(String id) {
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(MovieDBApi.BASE_URL)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
+    // The details are fetched from MovieDB if they never were, or
+    // longer ago than DETAIL_TTL. A movie may have no reviews or
+    // trailers, so the time is the one recorded on the movie.
+    private static boolean isStale(Cursor movie) {
+        return movie.isNull(MovieContract.COL_DETAIL_FETCHED_AT)
+                || System.currentTimeMillis() - movie.getLong(MovieContract.COL_DETAIL_FETCHED_AT) > DETAIL_TTL;
+    }
 
-        MovieDBApi service = retrofit.create(MovieDBApi.class);
-        Call<ReviewResults> call = service.getReviews(id, BuildConfig.MOVIE_DB_API_KEY);
+    // Shows the stored reviews
+    private void onReviewsLoaded(Cursor data) {
+        List<Review> reviewList = new ArrayList<>(data.getCount());
 
-        call.enqueue(new Callback<ReviewResults>() {
-            @Override
-            public void onResponse(Response<ReviewResults> response, Retrofit retrofit) {
-                ReviewResults reviewResult = response.body();
-                if (reviewResult == null) return;
+        data.moveToPosition(-1);
+        while (data.moveToNext()) {
+            reviewList.add(new Review(data));
+        }
+        addReviewList(reviewList);
+    }
 
-                List<Review> reviewList = reviewResult.results;
+    // Shows the stored trailers
+    private void onTrailersLoaded(Cursor data) {
+        List<Trailer> trailerList = new ArrayList<>(data.getCount());
 
-                addReviewList(reviewList);
-            }
+        data.moveToPosition(-1);
+        while (data.moveToNext()) {
+            trailerList.add(new Trailer(data));
+        }
+        addTrailerList(trailerList);
 
-            @Override
-            public void onFailure(Throwable t) {
-                Log.e(LOG_TAG, "Error loading review: " + t.getMessage());
-            }
-        });
+        // If onCreateOptionsMenu has already happened, we need to update the share intent now.
+        if (mShareActionProvider != null && trailerList.size() > 0) {
+            mShareActionProvider.setShareIntent(createShareForecastIntent(
+                    getActivity().getString(R.string.youtube_url) + trailerList.get(0).getKey()));
+        }
     }
 
-    private void getTrailers(String id) {
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(MovieDBApi.BASE_URL)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
 
-        MovieDBApi service = retrofit.create(MovieDBApi.class);
-        Call<TrailerResults> call = service.getTrailers(id, BuildConfig.MOVIE_DB_API_KEY);
+    }
 
-        call.enqueue(new Callback<TrailerResults>() {
-            @Override
-            public void onResponse(Response<TrailerResults> response, Retrofit retrofit) {
-                TrailerResults trailerResults = response.body();
-                if (trailerResults == null) return;
+    @Override
+    public void onDestroyView() {
+        // Stop listening for reviews and trailers, the shared
+        // calls are left running for any other caller
+        for (RequestCoalescer.Handle request : mPendingRequests) {
+            request.cancel();
+        }
+        mPendingRequests.clear();
 
-                List<Trailer> trailerList = trailerResults.results;
+        RequestCoalescer coalescer = MovieDBClient.getInstance(getActivity()).getCoalescer();
+        Log.d(LOG_TAG, "Detail requests: " + coalescer.getRequestCount()
+                + ", network calls saved: " + coalescer.getSavedCallCount());
+        super.onDestroyView();
+    }
 
-                addTrailerList(trailerList);
+    // Fetches the movie with its reviews and trailers in a single
+    // request, and stores them all in a single transaction
+    private void getDetails(final String id) {
+        final MovieDBClient client = MovieDBClient.getInstance(getActivity());
+
+        mPendingRequests.add(client.getCoalescer().enqueue(MovieDBApi.ENDPOINT_DETAILS, id,
+                new RequestCoalescer.CallFactory<MovieDetailResults>() {
+                    @Override
+                    public Call<MovieDetailResults> create() {
+                        return client.getApi().getMovieDetails(id, BuildConfig.MOVIE_DB_API_KEY,
+                                MovieDBApi.APPEND_VIDEOS_REVIEWS);
+                    }
+                },
+                new RequestCoalescer.Listener<MovieDetailResults>() {
+                    @Override
+                    public void onResult(MovieDetailResults details) {
+                        if (details == null) return;
+
+                        // store the details, the loaders then display them
+                        long fetchedAt = System.currentTimeMillis();
+                        Bundle extras = new Bundle();
+                        extras.putParcelable(MovieContract.EXTRA_MOVIE, details.getMovieValues());
+                        extras.putParcelableArray(MovieContract.EXTRA_REVIEWS, details.getReviewValues(fetchedAt));
+                        extras.putParcelableArray(MovieContract.EXTRA_TRAILERS, details.getTrailerValues(fetchedAt));
+                        extras.putLong(MovieContract.EXTRA_FETCHED_AT, fetchedAt);
+                        storeDetails(extras);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        Log.e(LOG_TAG, "Error loading details: " + t.getMessage());
+                    }
+                }));
+    }
 
-                // If onCreateOptionsMenu has already happened, we need to update the share intent now.
-                if (mShareActionProvider != null && getActivity() != null) {
-                    mShareActionProvider.setShareIntent(createShareForecastIntent(
-                            getActivity().getString(R.string.youtube_url) + trailerList.get(0).getKey()));
-                }
-            }
+    // Stores the details of the movie off the UI thread
+    private void storeDetails(final Bundle extras) {
+        if (getActivity() == null) return;
 
+        final ContentResolver resolver = getActivity().getContentResolver();
+        final String movieId = Long.toString(mMovieId);
+        AsyncTask.execute(new Runnable() {
             @Override
-            public void onFailure(Throwable t) {
-                Log.e(LOG_TAG, "Error loading review: " + t.getMessage());
+            public void run() {
+                resolver.call(MovieContract.BASE_CONTENT_URI,
+                        MovieContract.METHOD_STORE_DETAILS, movieId, extras);
             }
         });
     }
@@ -304,10 +422,10 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
         viewHolder.ratingText.setText(String.format("%.1f", mMovieItem.getRating()) + "/10");
 
-        // fetch thumbnail using thumbnail URL
+        // fetch thumbnail from its stored path, in the size of the view
         String thumbPath = mMovieItem.getPosterPath();
 
-        Picasso.with(getActivity()).load(thumbPath).into(viewHolder.thumbImage);
+        ImageLoader.getInstance(getActivity()).loadPosterInto(thumbPath, viewHolder.thumbImage);
 
         // extract synopsis
         viewHolder.synopsisText.setText(mMovieItem.getSynopsis());
@@ -318,47 +436,14 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             @Override
             public void onClick(View v) {
                 CheckBox checkBox = (CheckBox) v;
-                if (checkBox.isChecked()) {
-                    mMovieItem.setFavorite(true);
-                    saveFavorite();
-                } else {
-                    mMovieItem.setFavorite(false);
-                    deleteFavorite();
-                }
+                mMovieItem.setFavorite(checkBox.isChecked());
+                // written in the background
+                FavoritesRepository.getInstance(getActivity()).setFavorite(
+                        mMovieItem.getId(), mMovieItem.getContentValues(), checkBox.isChecked());
             }
         });
     }
 
-    private Cursor queryFavorite() {
-        return getActivity().getContentResolver().query(
-                MovieContract.MovieFavoriteEntry.buildMovieUri(mMovieItem.getId()),
-                null,
-                null,
-                null,
-                null);
-    }
-
-    private void saveFavorite() {
-        Cursor favorite = queryFavorite();
-
-        if (!favorite.moveToNext()) {
-            getActivity().getContentResolver().insert(
-                    MovieContract.MovieFavoriteEntry.CONTENT_URI,
-                    mMovieItem.getContentValues());
-        }
-    }
-
-    private void deleteFavorite() {
-        Cursor favorite = queryFavorite();
-
-        if (favorite.moveToNext()) {
-            getActivity().getContentResolver().delete(
-                    MovieContract.MovieFavoriteEntry.buildMovieUri(mMovieItem.getId()),
-                    null,
-                    null);
-        }
-    }
-
     static class ViewHolder {
         @Bind(R.id.detail_vertical_layout)
         LinearLayout detailLinearLayout;
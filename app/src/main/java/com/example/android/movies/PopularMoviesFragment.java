@@ -1,44 +1,92 @@
 package com.example.android.movies;
 
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
+import android.support.v4.view.MenuItemCompat;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.GridView;
 
 import com.example.android.movies.adapters.MovieAdapter;
-import com.example.android.movies.data.MovieContract;
+import com.example.android.movies.adapters.MoviePager;
+import com.example.android.movies.adapters.MovieRows;
+import com.example.android.movies.adapters.MovieRowsLoader;
+import com.example.android.movies.adapters.MovieSource;
+import com.example.android.movies.data.FavoritesRepository;
+import com.example.android.movies.data.MovieBatch;
+import com.example.android.movies.data.MovieContract.SearchEntry;
+import com.example.android.movies.sync.MovieListParser;
+import com.example.android.movies.sync.MoviesSyncAdapter;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
-import butterknife.OnItemClick;
 
 /**
  * A placeholder fragment containing a simple view.
- * This fragment displays the main {@link GridView} with
+ * This fragment displays the main {@link RecyclerView} grid with
  * an movie poster for each image extracted from the
  * MovieDB API.
  *
  * @author Ali K Thabet
  */
-public class PopularMoviesFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class PopularMoviesFragment extends Fragment
+        implements LoaderManager.LoaderCallbacks<MovieRows.Diff>, MovieAdapter.OnItemClickListener {
 
     private static final int MOVIE_LOADER = 0;
 
     private final String LOG_TAG = PopularMoviesFragment.class.getSimpleName();
 
-    public static final int MAX_PAGES = 5; // maximum page value allowed by API
+    public static final int MAX_PAGES = 5; // pages fetched by the periodic sync
 
-    private MovieAdapter mMoviesAdaptor; // adaptor to interact with GridView
-    private int mPosition = GridView.INVALID_POSITION;
+    // Distance in items to the end of the grid at which the next page is requested
+    private static final int NEXT_PAGE_THRESHOLD = 6;
+    // Time the grid must stay near its end before the next page is requested
+    private static final long NEXT_PAGE_DELAY = 300; // milliseconds
+
+    private MovieAdapter mMoviesAdaptor; // adaptor to interact with the grid
+    // Pages of the selected list, null while searching
+    private MoviePager mPager;
+    private int mPosition = RecyclerView.NO_POSITION;
 
     private static final String SELECTED_KEY = "selected_position";
+    private static final String SEARCH_KEY = "search_query";
+
+    // Time the search text must stay unchanged before it is searched
+    private static final long SEARCH_DELAY = 300; // milliseconds
+
+    private final Handler mHandler = new Handler();
+    private int mNextPage;
+    private final Runnable mNextPageRequest = new Runnable() {
+        @Override
+        public void run() {
+            String sortBy = getActivity() != null ? Utility.getAPISortType(getActivity()) : null;
+            if (sortBy != null) {
+                MoviesSyncAdapter.syncPage(getActivity(), sortBy, mNextPage);
+            }
+        }
+    };
+
+    // Text searched, the grid shows the selected list when it is empty
+    private String mSearchQuery = "";
+    private final Runnable mSearchRequest = new Runnable() {
+        @Override
+        public void run() {
+            if (isAdded()) {
+                showMovies();
+            }
+        }
+    };
     /**
      * A callback interface that all activities containing this fragment must
      * implement. This mechanism allows activities to be notified of item
@@ -51,16 +99,21 @@ public class PopularMoviesFragment extends Fragment implements LoaderManager.Loa
         public void onItemSelected(Uri movieUri);
     }
 
-    @Bind(R.id.gridview_movies)
-    GridView gridView;
+    @Bind(R.id.recyclerview_movies)
+    RecyclerView recyclerView;
 
-    @OnItemClick(R.id.gridview_movies)
+    @Override
     public void onItemClick(int position) {
-        Cursor cursor = (Cursor) gridView.getItemAtPosition(position);
-        if (cursor != null) {
-            ((Callback) getActivity())
-                    .onItemSelected(Utility.getUriWithIDFromSort(getActivity(), cursor));
+        MovieSource movies = mMoviesAdaptor.getMovies();
+        if (!movies.isLoaded(position)) {
+            return;
         }
+        long movieId = movies.getId(position);
+        // a movie found by a search may not be in the selected list
+        Uri movieUri = isSearching()
+                ? SearchEntry.buildMovieUri(movieId)
+                : Utility.getUriWithIDFromSort(getActivity(), movieId);
+        ((Callback) getActivity()).onItemSelected(movieUri);
         mPosition = position;
     }
 
@@ -72,21 +125,118 @@ public class PopularMoviesFragment extends Fragment implements LoaderManager.Loa
         super.onCreate(savedInstanceState);
         // Add this line in order for this fragment to handle menu events.
         setHasOptionsMenu(true);
+        if (savedInstanceState != null) {
+            mSearchQuery = savedInstanceState.getString(SEARCH_KEY, "");
+        }
+    }
+
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        inflater.inflate(R.menu.moviesfragment, menu);
+
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
+        if (isSearching()) {
+            MenuItemCompat.expandActionView(searchItem);
+            searchView.setQuery(mSearchQuery, false);
+        }
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                setSearchQuery(query, 0);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                setSearchQuery(newText, SEARCH_DELAY);
+                return true;
+            }
+        });
+        MenuItemCompat.setOnActionExpandListener(searchItem, new MenuItemCompat.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                // back to the selected list
+                setSearchQuery("", 0);
+                return true;
+            }
+        });
+    }
+
+    // Searches the text once it stays unchanged for the delay, so typing
+    // a word runs a single query instead of one per character
+    private void setSearchQuery(String query, long delay) {
+        query = query != null ? query.trim() : "";
+        if (query.equals(mSearchQuery)) {
+            return;
+        }
+        mSearchQuery = query;
+        mHandler.removeCallbacks(mSearchRequest);
+        mHandler.postDelayed(mSearchRequest, delay);
+    }
+
+    private boolean isSearching() {
+        return !TextUtils.isEmpty(mSearchQuery);
     }
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
 
-        mMoviesAdaptor = new MovieAdapter(getActivity(), null, 0);
-        // get a reference to the GridView and attach the ImageAdaptor to it
+        int columns = getResources().getInteger(R.integer.grid_columns);
+        mMoviesAdaptor = new MovieAdapter(getActivity(), columns, this);
+        // get a reference to the RecyclerView and attach the adaptor to it
         View rootView = inflater.inflate(R.layout.fragment_main, container, false);
         ButterKnife.bind(this, rootView);
 
-        gridView.setAdapter(mMoviesAdaptor);
+        final GridLayoutManager layoutManager = new GridLayoutManager(getActivity(), columns);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setHasFixedSize(true);
+        // a movie whose content changed is rebound in place
+        recyclerView.getItemAnimator().setSupportsChangeAnimations(false);
+        recyclerView.setAdapter(mMoviesAdaptor);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView view, int newState) {
+                // posters are decoded once a fling settles, not for every row it crosses
+                if (newState == RecyclerView.SCROLL_STATE_SETTLING) {
+                    mMoviesAdaptor.pauseImages();
+                } else {
+                    mMoviesAdaptor.resumeImages();
+                }
+            }
+
+            @Override
+            public void onScrolled(RecyclerView view, int dx, int dy) {
+                int firstVisible = layoutManager.findFirstVisibleItemPosition();
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (firstVisible == RecyclerView.NO_POSITION) {
+                    return;
+                }
+
+                // prefetch the next screen of rows, in the scroll direction
+                int visibleCount = lastVisible - firstVisible + 1;
+                if (dy > 0) {
+                    mMoviesAdaptor.prefetch(lastVisible + 1, lastVisible + 1 + visibleCount);
+                } else if (dy < 0) {
+                    mMoviesAdaptor.prefetch(firstVisible - visibleCount, firstVisible);
+                }
+
+                int totalItemCount = layoutManager.getItemCount();
+                if (totalItemCount > 0 && lastVisible >= totalItemCount - 1 - NEXT_PAGE_THRESHOLD) {
+                    requestNextPage();
+                }
+            }
+        });
 
         if (savedInstanceState != null && savedInstanceState.containsKey(SELECTED_KEY)) {
-            // The GridView probably hasn't even been populated yet. Actually perform the
+            // The grid probably hasn't even been populated yet. Actually perform the
             // swapout in onLoadFinished.
             mPosition = savedInstanceState.getInt(SELECTED_KEY);
         }
@@ -94,59 +244,131 @@ public class PopularMoviesFragment extends Fragment implements LoaderManager.Loa
         return rootView;
     }
 
+    // Schedules the sync of the page after the last movie of the grid.
+    // The request is debounced, so a fling near the end of the grid
+    // results in a single request.
+    private void requestNextPage() {
+        if (isSearching()) {
+            // search results are not a list, there is no next page
+            return;
+        }
+        MovieSource movies = mMoviesAdaptor.getMovies();
+        int last = movies.size() - 1;
+        if (last < 0 || !movies.isLoaded(last) || movies.getRank(last) == MovieBatch.NO_RANK) {
+            return;
+        }
+        mNextPage = (int) (movies.getRank(last) / MovieListParser.PAGE_SIZE) + 2;
+        mHandler.removeCallbacks(mNextPageRequest);
+        mHandler.postDelayed(mNextPageRequest, NEXT_PAGE_DELAY);
+    }
+
+    @Override
+    public void onDestroyView() {
+        mHandler.removeCallbacks(mNextPageRequest);
+        mHandler.removeCallbacks(mSearchRequest);
+        // paused requests are held by their tag until resumed
+        mMoviesAdaptor.resumeImages();
+        closePager();
+        super.onDestroyView();
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        // favorites are badged from memory, loaded once
+        FavoritesRepository favorites = FavoritesRepository.getInstance(getActivity());
+        favorites.addListener(mMoviesAdaptor);
+        favorites.load();
+    }
+
+    @Override
+    public void onStop() {
+        FavoritesRepository.getInstance(getActivity()).removeListener(mMoviesAdaptor);
+        super.onStop();
+    }
+
     @Override
     public void onResume() {
-        getLoaderManager().restartLoader(MOVIE_LOADER, null, this);
+        showMovies();
         super.onResume();
 
     }
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
-        getLoaderManager().initLoader(MOVIE_LOADER, null, this);
+        if (isSearching()) {
+            getLoaderManager().initLoader(MOVIE_LOADER, null, this);
+        }
         super.onActivityCreated(savedInstanceState);
     }
 
     // check if sort order has changed
     void onSortOrderChanged() {
-        getLoaderManager().restartLoader(MOVIE_LOADER, null, this);
+        showMovies();
+    }
+
+    // Shows the search results through the loader, or the selected list
+    // through a pager, which reads it page by page as the grid scrolls
+    private void showMovies() {
+        if (isSearching()) {
+            closePager();
+            getLoaderManager().restartLoader(MOVIE_LOADER, null, this);
+            return;
+        }
+        getLoaderManager().destroyLoader(MOVIE_LOADER);
+        Uri uri = Utility.getUriFromSort(getActivity());
+        if (mPager != null && mPager.getUri().equals(uri)) {
+            // already shown, the pager follows the changes of the list
+            return;
+        }
+        closePager();
+        mPager = new MoviePager(getActivity(), uri);
+        mMoviesAdaptor.setPager(mPager);
+        mPager.start();
+    }
+
+    private void closePager() {
+        if (mPager != null) {
+            mPager.close();
+            mPager = null;
+        }
     }
 
     @Override
     public void onSaveInstanceState(Bundle outState) {
         // When tablets rotate, the currently selected list item needs to be saved.
-        // When no item is selected, mPosition will be set to Listview.INVALID_POSITION,
+        // When no item is selected, mPosition will be set to RecyclerView.NO_POSITION,
         // so check for that before storing.
-        if (mPosition != GridView.INVALID_POSITION) {
+        if (mPosition != RecyclerView.NO_POSITION) {
             outState.putInt(SELECTED_KEY, mPosition);
         }
+        outState.putString(SEARCH_KEY, mSearchQuery);
         super.onSaveInstanceState(outState);
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        String sortOrder = Utility.getSortOrder(getActivity());
-        return new CursorLoader(getActivity(),
-                Utility.getUriFromSort(getActivity()),
-                MovieContract.MOVIE_COLUMNS,
-                null,
-                null,
-                sortOrder);
+    public Loader<MovieRows.Diff> onCreateLoader(int id, Bundle args) {
+        // The loader only serves the search results, with the title
+        // matches first. The lists are paged.
+        Uri uri = SearchEntry.buildSearchUri(mSearchQuery);
+        // the rows shown are the base of the first diff, so refining
+        // a search only rebinds the cells that differ
+        return new MovieRowsLoader(getActivity(), uri, mMoviesAdaptor.getRows());
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        mMoviesAdaptor.swapCursor(data);
+    public void onLoadFinished(Loader<MovieRows.Diff> loader, MovieRows.Diff data) {
+        mMoviesAdaptor.swapRows(data);
 
-//        if (mPosition != ListView.INVALID_POSITION) {
+//        if (mPosition != RecyclerView.NO_POSITION) {
 //            // If we don't need to restart the loader, and there's a desired position to restore
 //            // to, do so now.
-//            gridView.smoothScrollToPosition(mPosition);
+//            recyclerView.smoothScrollToPosition(mPosition);
 //        }
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mMoviesAdaptor.swapCursor(null);
+    public void onLoaderReset(Loader<MovieRows.Diff> loader) {
+        // the rows stay shown until the next loader delivers
     }
 }
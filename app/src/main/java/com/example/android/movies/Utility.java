@@ -2,11 +2,9 @@ package com.example.android.movies;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.net.Uri;
 import android.preference.PreferenceManager;
 
-import com.example.android.movies.data.GeneralEntry;
 import com.example.android.movies.data.MovieContract;
 
 /**
@@ -15,17 +13,6 @@ import com.example.android.movies.data.MovieContract;
  * @author Ali K Thabet
  */
 public class Utility {
-    public static String getSortOrder(Context context) {
-        String sortType = getSortType(context);
-        if (sortType.equals(context.getString(R.string.pref_sort_popular))) {
-            return GeneralEntry.COLUMN_POPULARITY + " DESC";
-        } else if (sortType.equals(context.getString(R.string.pref_sort_rated))){
-            return GeneralEntry.COLUMN_RATING + " DESC";
-        } else {
-            return GeneralEntry.COLUMN_TITLE + " ASC";
-        }
-    }
-
     public static String getSortType(Context context){
         SharedPreferences sharedPrefs =
                 PreferenceManager.getDefaultSharedPreferences(context);
@@ -49,6 +36,21 @@ public class Utility {
         throw new UnsupportedOperationException("Unknown sort order: " + sortType);
     }
 
+    /**
+     * @return the API sort type of the list selected in the preferences,
+     * null for lists that are not fetched from the API
+     */
+    public static String getAPISortType(Context context) {
+        String sortType = getSortType(context);
+        if (sortType.equals(context.getString(R.string.pref_sort_popular))) {
+            return context.getString(R.string.pref_sort_popular_api);
+        }
+        if (sortType.equals(context.getString(R.string.pref_sort_rated))) {
+            return context.getString(R.string.pref_sort_rated_api);
+        }
+        return null;
+    }
+
     public static Uri getUriFromAPISort(Context context, String sortType) {
         if (sortType.equals(context.getString(R.string.pref_sort_popular_api))) {
             return MovieContract.MovieEntry.CONTENT_URI;
@@ -59,19 +61,16 @@ public class Utility {
 
         throw new UnsupportedOperationException("Unknown sort order: " + sortType);
     }
-    public static Uri getUriWithIDFromSort(Context context, Cursor cursor) {
+    public static Uri getUriWithIDFromSort(Context context, long movieId) {
         String sortType = getSortType(context);
         if (sortType.equals(context.getString(R.string.pref_sort_popular))) {
-            return MovieContract.MovieEntry.buildMovieUri(
-                    cursor.getInt(MovieContract.COL_MOVIE_ID));
+            return MovieContract.MovieEntry.buildMovieUri(movieId);
         }
         if (sortType.equals(context.getString(R.string.pref_sort_rated))) {
-            return MovieContract.MovieRatingEntry.buildMovieUri(
-                    cursor.getInt(MovieContract.COL_MOVIE_ID));
+            return MovieContract.MovieRatingEntry.buildMovieUri(movieId);
         }
         if (sortType.equals(context.getString(R.string.pref_sort_favorite))) {
-            return MovieContract.MovieFavoriteEntry.buildMovieUri(
-                    cursor.getInt(MovieContract.COL_MOVIE_ID));
+            return MovieContract.MovieFavoriteEntry.buildMovieUri(movieId);
         }
 
         throw new UnsupportedOperationException("Unknown sort order: " + sortType);
@@ -1,54 +1,277 @@
 package com.example.android.movies.adapters;
 
 import android.content.Context;
-import android.database.Cursor;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.CursorAdapter;
 import android.widget.ImageView;
 
 import com.example.android.movies.R;
-import com.example.android.movies.data.MovieContract;
-import com.squareup.picasso.Picasso;
+import com.example.android.movies.data.FavoritesRepository;
+import com.example.android.movies.images.ImageLoader;
+
+import java.util.List;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
 
 /**
- * Custom {@link CursorAdapter} to read movie data
- * from DB and display corresponding move poster
+ * Custom {@link RecyclerView.Adapter} to display the movie poster of
+ * each of the {@link MovieRows} loaded from DB, or of the movies of a
+ * {@link MoviePager}, whose pages are loaded as their cells are bound.
+ * New rows are applied with their {@link MovieRows.Diff}, so only the
+ * cells that changed are rebound. Posters are decoded to the size of
+ * the cells, and those of the rows about to be scrolled in can be
+ * prefetched. Favorites are badged from the in-memory
+ * {@link FavoritesRepository}, and a change of the favorites only
+ * updates the badges.
  *
  * @author Ali K Thabet
  */
-public class MovieAdapter extends CursorAdapter {
-    public MovieAdapter(Context context, Cursor c, int flags) {
-        super(context, c, flags);
+public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.ViewHolder>
+        implements FavoritesRepository.Listener, MoviePager.Listener {
+
+    /**
+     * Interface to be notified of the movie clicked in the grid.
+     */
+    public interface OnItemClickListener {
+        void onItemClick(int position);
+    }
+
+    private final Context mContext;
+    private final OnItemClickListener mListener;
+    private final ImageLoader mImageLoader;
+    private final FavoritesRepository mFavorites;
+    private final int mColumns;
+    // Rows shown, the base of the next diff, empty while paging
+    private MovieRows mRows = MovieRows.EMPTY;
+    private MoviePager mPager;
+    // Movies shown, the rows or the pager
+    private MovieSource mMovies = mRows;
+
+    // Size of the cells, estimated from the screen until the grid is measured
+    private int mCellWidth;
+    private int mCellHeight;
+
+    // Positions whose posters were last prefetched, end excluded
+    private int mPrefetchStart;
+    private int mPrefetchEnd;
+
+    public MovieAdapter(Context context, int columns, OnItemClickListener listener) {
+        mContext = context;
+        mListener = listener;
+        mImageLoader = ImageLoader.getInstance(context);
+        mFavorites = FavoritesRepository.getInstance(context);
+        mColumns = columns;
+        setCellWidth(context.getResources().getDisplayMetrics().widthPixels / columns);
+        setHasStableIds(true);
+    }
+
+    // Payload of the rebinds that only update the favorite badge
+    private static final Object PAYLOAD_FAVORITE = new Object();
+
+    private void setCellWidth(int width) {
+        mCellWidth = width;
+        mCellHeight = ImageLoader.getPosterHeight(width);
+    }
+
+    public MovieRows getRows() {
+        return mRows;
+    }
+
+    public MovieSource getMovies() {
+        return mMovies;
+    }
+
+    /**
+     * Shows the new rows of the diff, notifying only the ranges that
+     * changed. If the diff wasn't computed from the rows shown, e.g.
+     * after they were cleared or while paging, the whole grid is rebound.
+     */
+    public void swapRows(MovieRows.Diff diff) {
+        if (diff.getNewRows() == mMovies) {
+            // already shown, e.g. delivered again on restart
+            return;
+        }
+        boolean fromShown = mPager == null && diff.getOldRows() == mRows;
+        detachPager();
+        mRows = diff.getNewRows();
+        mMovies = mRows;
+        if (fromShown) {
+            diff.dispatchTo(this);
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Shows the movies of the pager. Its pages are loaded as their cells
+     * are bound, and the cells are rebound once their page is loaded.
+     */
+    public void setPager(MoviePager pager) {
+        detachPager();
+        mPager = pager;
+        mPager.setListener(this);
+        mRows = MovieRows.EMPTY;
+        mMovies = pager;
+        notifyDataSetChanged();
+    }
+
+    private void detachPager() {
+        if (mPager != null) {
+            mPager.setListener(null);
+            mPager = null;
+        }
+    }
+
+    @Override
+    public void onCountChanged(int oldCount, int newCount) {
+        if (newCount > oldCount) {
+            notifyItemRangeInserted(oldCount, newCount - oldCount);
+        } else {
+            notifyItemRangeRemoved(newCount, oldCount - newCount);
+        }
     }
 
     @Override
-    public View newView(Context context, Cursor cursor, ViewGroup parent) {
-        return LayoutInflater.from(context).inflate(R.layout.grid_item_movies, parent, false);
+    public void onRowsReplaced(int start, int count) {
+        // the ids are stable, so other ids at the positions are other items
+        notifyItemRangeRemoved(start, count);
+        notifyItemRangeInserted(start, count);
     }
 
     @Override
-    public void bindView(View view, Context context, Cursor cursor) {
+    public void onRowsChanged(int start, int count) {
+        notifyItemRangeChanged(start, count);
+    }
 
-        ViewHolder viewHolder = new ViewHolder(view);
+    @Override
+    public void onFavoritesChanged() {
+        if (getItemCount() > 0) {
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_FAVORITE);
+        }
+    }
 
-        String posterPath = cursor.getString(MovieContract.COL_MOVIE_POSTER);
-        if (posterPath == null) posterPath = context.getString(R.string.poster_url_alt);
+    /**
+     * Prefetches the posters of the positions, skipping those of the
+     * previous call. Positions out of the rows are ignored.
+     *
+     * @param end position after the last one to prefetch
+     */
+    public void prefetch(int start, int end) {
+        start = Math.max(0, start);
+        end = Math.min(mMovies.size(), end);
+        for (int position = start; position < end; position++) {
+            // the posters of a page not loaded yet are fetched when it is bound
+            if (mMovies.isLoaded(position) && (position < mPrefetchStart || position >= mPrefetchEnd)) {
+                mImageLoader.prefetchPoster(getPoster(position), mCellWidth, this);
+            }
+        }
+        mPrefetchStart = start;
+        mPrefetchEnd = end;
+    }
 
-        ImageView imageView = viewHolder.imageView;
-        Picasso.with(context).load(posterPath).into(imageView);
+    /**
+     * Holds back the poster downloads, e.g. during a fling, so that
+     * decoding doesn't compete with the scrolling.
+     */
+    public void pauseImages() {
+        mImageLoader.pause(this);
     }
 
-    static class ViewHolder{
+    public void resumeImages() {
+        mImageLoader.resume(this);
+    }
+
+    private String getPoster(int position) {
+        String posterPath = mMovies.getPoster(position);
+        return posterPath != null ? posterPath : mContext.getString(R.string.poster_url_alt);
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        // the grid is measured before its first cell is created
+        int width = (parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight()) / mColumns;
+        if (width > 0 && width != mCellWidth) {
+            setCellWidth(width);
+        }
+
+        View view = LayoutInflater.from(mContext).inflate(R.layout.grid_item_movies, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder viewHolder, int position) {
+        // a fixed cell height keeps the grid still while posters load
+        ViewGroup.LayoutParams params = viewHolder.imageView.getLayoutParams();
+        if (params.height != mCellHeight) {
+            params.height = mCellHeight;
+            viewHolder.imageView.setLayoutParams(params);
+        }
+
+        if (mPager != null) {
+            mPager.loadAround(position);
+        }
+        if (!mMovies.isLoaded(position)) {
+            // placeholder, rebound once its page is loaded
+            mImageLoader.cancel(viewHolder.imageView);
+            viewHolder.imageView.setImageDrawable(null);
+            viewHolder.imageView.setContentDescription(null);
+            viewHolder.favoriteView.setVisibility(View.GONE);
+            return;
+        }
+
+        viewHolder.imageView.setContentDescription(mMovies.getTitle(position));
+        mImageLoader.loadPoster(getPoster(position), mCellWidth, this).into(viewHolder.imageView);
+        bindFavorite(viewHolder, position);
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder viewHolder, int position, List<Object> payloads) {
+        // the only partial rebind is the badge, any other is a full one
+        if (!payloads.isEmpty()) {
+            bindFavorite(viewHolder, position);
+        } else {
+            onBindViewHolder(viewHolder, position);
+        }
+    }
+
+    private void bindFavorite(ViewHolder viewHolder, int position) {
+        boolean favorite = mMovies.isLoaded(position)
+                && mFavorites.isFavorite((int) mMovies.getId(position));
+        viewHolder.favoriteView.setVisibility(favorite ? View.VISIBLE : View.GONE);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mMovies.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mMovies.getId(position);
+    }
+
+    class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
         @Bind(R.id.grid_item_movies_imageview)
         ImageView imageView;
 
+        @Bind(R.id.grid_item_favorite_imageview)
+        ImageView favoriteView;
+
         public ViewHolder(View view) {
+            super(view);
             ButterKnife.bind(this, view);
+            view.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View v) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                mListener.onItemClick(position);
+            }
         }
     }
 }
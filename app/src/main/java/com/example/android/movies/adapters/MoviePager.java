@@ -0,0 +1,450 @@
+package com.example.android.movies.adapters;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.android.movies.data.MovieBatch;
+import com.example.android.movies.data.MovieContract;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Paged source of the movies of a list, for lists too large to be read
+ * at once. Only the count of the list is queried up front, the movies
+ * are read in pages of {@link #PAGE_SIZE} as the grid reaches them. A
+ * page following one in memory starts after the rank of its last movie,
+ * an index seek at any depth in the list, and only a page reached by a
+ * jump is read from its offset. At most {@link #MAX_PAGES} pages are
+ * kept, the least recently shown are dropped and their rows turn back
+ * into placeholders, so memory doesn't grow with the list and every
+ * query fills a small cursor window. The page ahead in the direction
+ * of the scroll is loaded before it is reached.
+ * <p>
+ * Like a loader, the pager reads the list again when the provider
+ * notifies a change, but only its count, from the list table alone, and
+ * the pages in memory. Rows whose movie changes, including placeholders
+ * replaced by the movies of a page read, are notified apart from the
+ * rows whose content changes, since their ids change. Pages are read
+ * on a background thread. All the methods must be called from the main
+ * thread, and the listener is notified on it.
+ *
+ * @author Ali K Thabet
+ */
+public class MoviePager implements MovieSource {
+    private static final String LOG_TAG = MoviePager.class.getSimpleName();
+
+    // Movies per page, a few screens of the grid
+    public static final int PAGE_SIZE = 60;
+    // Pages kept in memory: the visible ones and those around them
+    static final int MAX_PAGES = 5;
+    // Distance in items to the next page at which it is loaded
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+
+    /**
+     * Interface to be notified of the positions to show again.
+     */
+    public interface Listener {
+        void onCountChanged(int oldCount, int newCount);
+
+        // The rows show other movies, or movies instead of placeholders,
+        // or the reverse: their ids changed
+        void onRowsReplaced(int start, int count);
+
+        // The rows show the same movies, whose content changed
+        void onRowsChanged(int start, int count);
+    }
+
+    private final ContentResolver mResolver;
+    private final Uri mUri;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private Listener mListener;
+
+    private int mCount;
+    // Pages in memory by index, the least recently shown first. Reading
+    // a page with get counts as showing it, see evictPages.
+    private final LinkedHashMap<Integer, MovieRows> mPages =
+            new LinkedHashMap<>(MAX_PAGES + 1, 0.75f, true);
+    private final Set<Integer> mLoadingPages = new HashSet<>();
+    private int mLastPosition;
+
+    // Incremented by each reload, the pages read before it are dropped
+    private int mGeneration;
+    private boolean mReloading;
+    // The list changed while reloading, the pages read may be stale
+    private boolean mStale;
+    private boolean mClosed;
+
+    // Reloads when the list changes, batching the notifications
+    // that arrive while a reload is running
+    private final ContentObserver mObserver = new ContentObserver(mMainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            if (mReloading) {
+                mStale = true;
+            } else {
+                reload();
+            }
+        }
+    };
+
+    public MoviePager(Context context, Uri listUri) {
+        mResolver = context.getContentResolver();
+        mUri = listUri;
+    }
+
+    public Uri getUri() {
+        return mUri;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Reads the count of the list, then follows its changes until closed.
+     */
+    public void start() {
+        mResolver.registerContentObserver(mUri, true, mObserver);
+        reload();
+    }
+
+    /**
+     * Stops following the list and drops the reads not done yet.
+     */
+    public void close() {
+        mClosed = true;
+        mResolver.unregisterContentObserver(mObserver);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Loads the page of the position if it isn't in memory, and the next
+     * one in the direction of the scroll once the position gets close to it.
+     */
+    public void loadAround(int position) {
+        if (position < 0 || position >= mCount) {
+            return;
+        }
+        loadPage(position / PAGE_SIZE);
+        int ahead = position >= mLastPosition
+                ? position + PREFETCH_DISTANCE
+                : position - PREFETCH_DISTANCE;
+        if (ahead >= 0 && ahead < mCount) {
+            loadPage(ahead / PAGE_SIZE);
+        }
+        mLastPosition = position;
+    }
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+
+    @Override
+    public boolean isLoaded(int position) {
+        return getPageRows(position) != null;
+    }
+
+    /**
+     * @return the id of the movie, or a negative id for a placeholder
+     */
+    @Override
+    public long getId(int position) {
+        MovieRows rows = getPageRows(position);
+        return rows != null ? rows.getId(position % PAGE_SIZE) : -1 - position;
+    }
+
+    @Override
+    public String getTitle(int position) {
+        MovieRows rows = getPageRows(position);
+        return rows != null ? rows.getTitle(position % PAGE_SIZE) : null;
+    }
+
+    @Override
+    public String getPoster(int position) {
+        MovieRows rows = getPageRows(position);
+        return rows != null ? rows.getPoster(position % PAGE_SIZE) : null;
+    }
+
+    @Override
+    public long getRank(int position) {
+        MovieRows rows = getPageRows(position);
+        return rows != null ? rows.getRank(position % PAGE_SIZE) : MovieBatch.NO_RANK;
+    }
+
+    // Rows of the page of the position, null if it isn't in memory
+    private MovieRows getPageRows(int position) {
+        MovieRows rows = mPages.get(position / PAGE_SIZE);
+        return rows != null && position % PAGE_SIZE < rows.size() ? rows : null;
+    }
+
+    private void loadPage(final int page) {
+        if (mClosed || mPages.containsKey(page) || mLoadingPages.contains(page)) {
+            return;
+        }
+        mLoadingPages.add(page);
+        // the previous page may predate a change being reloaded
+        final long afterRank = getLastRank(mReloading ? null : peekPage(page - 1));
+        final int generation = mGeneration;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final MovieRows rows = queryPage(page, afterRank);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, page, rows);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int generation, int page, MovieRows rows) {
+        if (mClosed || generation != mGeneration) {
+            return;
+        }
+        mLoadingPages.remove(page);
+        if (rows == null || rows.size() == 0) {
+            return;
+        }
+        mPages.put(page, rows);
+        List<Integer> evicted = evictPages();
+        // the placeholders of the page are replaced by its movies,
+        // and the movies of the pages dropped by placeholders
+        notifyRows(page, true);
+        for (int dropped : evicted) {
+            notifyRows(dropped, true);
+        }
+    }
+
+    // Reads the count and the pages in memory, or being read, again
+    private void reload() {
+        if (mClosed) {
+            return;
+        }
+        mReloading = true;
+        mStale = false;
+        mGeneration++;
+        final int generation = mGeneration;
+
+        Set<Integer> pageSet = new HashSet<>(mPages.keySet());
+        pageSet.addAll(mLoadingPages);
+        mLoadingPages.clear();
+        final int[] pages = new int[pageSet.size()];
+        int n = 0;
+        for (int page : pageSet) {
+            pages[n++] = page;
+        }
+        Arrays.sort(pages);
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int count = queryCount();
+                final MovieRows[] rows = new MovieRows[pages.length];
+                for (int i = 0; i < pages.length && count >= 0 && pages[i] * PAGE_SIZE < count; i++) {
+                    // consecutive pages follow each other by rank
+                    boolean follows = i > 0 && pages[i - 1] == pages[i] - 1;
+                    rows[i] = queryPage(pages[i], getLastRank(follows ? rows[i - 1] : null));
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onReloaded(generation, count, pages, rows);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onReloaded(int generation, int count, int[] pages, MovieRows[] rows) {
+        if (mClosed || generation != mGeneration) {
+            return;
+        }
+        mReloading = false;
+        if (count < 0) {
+            // the list couldn't be read, keep showing what is in memory,
+            // the pages that were being read are loaded again when rebound
+            for (int page : pages) {
+                if (!mPages.containsKey(page)) {
+                    notifyRows(page, false);
+                }
+            }
+            if (mStale) {
+                reload();
+            }
+            return;
+        }
+
+        MovieRows[] old = new MovieRows[pages.length];
+        boolean[] loaded = new boolean[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            loaded[i] = rows[i] != null && rows[i].size() > 0;
+        }
+        // the pages in memory are updated in place, so they keep their recency
+        Iterator<Map.Entry<Integer, MovieRows>> entries = mPages.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Integer, MovieRows> entry = entries.next();
+            int i = Arrays.binarySearch(pages, entry.getKey());
+            if (i < 0) {
+                // read after the reload started, already current
+                continue;
+            }
+            old[i] = entry.getValue();
+            if (loaded[i]) {
+                entry.setValue(rows[i]);
+            } else {
+                entries.remove();
+            }
+        }
+        // the pages that were being read are the most recently shown
+        for (int i = 0; i < pages.length; i++) {
+            if (old[i] == null && loaded[i]) {
+                mPages.put(pages[i], rows[i]);
+            }
+        }
+        List<Integer> evicted = evictPages();
+
+        boolean[] replaced = new boolean[pages.length];
+        boolean[] changed = new boolean[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            if (evicted.contains(pages[i])) {
+                // placeholders again, unless they were not read yet
+                replaced[i] = old[i] != null;
+            } else if (old[i] == null || !loaded[i]) {
+                // movies instead of placeholders, or the reverse
+                replaced[i] = old[i] != null || loaded[i];
+            } else {
+                replaced[i] = !hasSameIds(old[i], rows[i]);
+                changed[i] = !replaced[i] && !old[i].diff(rows[i]).isEmpty();
+            }
+        }
+
+        int oldCount = mCount;
+        mCount = count;
+        if (mListener != null && count != oldCount) {
+            mListener.onCountChanged(oldCount, count);
+        }
+        for (int i = 0; i < pages.length; i++) {
+            if (replaced[i] || changed[i]) {
+                // a page that couldn't be read is loaded again when rebound
+                notifyRows(pages[i], replaced[i]);
+            }
+        }
+        for (int dropped : evicted) {
+            if (Arrays.binarySearch(pages, dropped) < 0) {
+                notifyRows(dropped, true);
+            }
+        }
+
+        if (mStale) {
+            reload();
+        }
+    }
+
+    // Drops the least recently shown pages beyond MAX_PAGES and returns
+    // them. Their rows show placeholders again, the caller notifies them.
+    private List<Integer> evictPages() {
+        if (mPages.size() <= MAX_PAGES) {
+            return Collections.emptyList();
+        }
+        List<Integer> evicted = new ArrayList<>(mPages.size() - MAX_PAGES);
+        Iterator<Integer> pages = mPages.keySet().iterator();
+        while (mPages.size() > MAX_PAGES) {
+            evicted.add(pages.next());
+            pages.remove();
+        }
+        return evicted;
+    }
+
+    // Rows of the page without counting it as shown, null if it isn't in memory
+    private MovieRows peekPage(int page) {
+        for (Map.Entry<Integer, MovieRows> entry : mPages.entrySet()) {
+            if (entry.getKey() == page) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void notifyRows(int page, boolean replaced) {
+        int start = page * PAGE_SIZE;
+        if (mListener == null || start >= mCount) {
+            return;
+        }
+        int count = Math.min(PAGE_SIZE, mCount - start);
+        if (replaced) {
+            mListener.onRowsReplaced(start, count);
+        } else {
+            mListener.onRowsChanged(start, count);
+        }
+    }
+
+    // true if the rows show the same movies at the same positions
+    private static boolean hasSameIds(MovieRows a, MovieRows b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.getId(i) != b.getId(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Rank after which the page following rows starts, or NO_RANK if
+    // that page must be read by its offset
+    private static long getLastRank(MovieRows rows) {
+        return rows != null && rows.size() == PAGE_SIZE
+                ? rows.getRank(PAGE_SIZE - 1) : MovieBatch.NO_RANK;
+    }
+
+    // Reads a page after the rank if known, from its offset otherwise.
+    // Returns null if the list couldn't be read.
+    private MovieRows queryPage(int page, long afterRank) {
+        Uri pageUri = afterRank != MovieBatch.NO_RANK
+                ? MovieContract.buildListPageUri(mUri, afterRank, PAGE_SIZE)
+                : MovieContract.buildListOffsetPageUri(mUri, page * PAGE_SIZE, PAGE_SIZE);
+        Cursor cursor = mResolver.query(pageUri, MovieContract.MOVIE_COLUMNS, null, null, null);
+        if (cursor == null) {
+            Log.e(LOG_TAG, "Failed to query page " + page + " of " + mUri);
+            return null;
+        }
+        try {
+            return MovieRows.fromCursor(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Number of movies in the list, -1 if it couldn't be read
+    private int queryCount() {
+        Bundle result = mResolver.call(MovieContract.BASE_CONTENT_URI,
+                MovieContract.METHOD_COUNT_LIST, mUri.toString(), null);
+        if (result == null) {
+            Log.e(LOG_TAG, "Failed to count " + mUri);
+            return -1;
+        }
+        return result.getInt(MovieContract.EXTRA_COUNT);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.android.movies.adapters;
+
+import android.database.Cursor;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
+
+import com.example.android.movies.data.MovieContract;
+import com.example.android.movies.data.MovieRowReader;
+
+/**
+ * Immutable copy of the movies shown by the grid, read from a cursor
+ * with the {@link MovieContract#MOVIE_COLUMNS}. Holding the rows instead
+ * of the cursor lets the grid be compared with the next query result
+ * on a background thread, and only the rows that differ be rebound.
+ *
+ * @author Ali K Thabet
+ */
+public class MovieRows implements MovieSource {
+    public static final MovieRows EMPTY = new MovieRows(0);
+
+    private final long[] mIds;
+    private final String[] mTitles;
+    private final String[] mPosters;
+    private final long[] mRanks;
+
+    private MovieRows(int count) {
+        mIds = new long[count];
+        mTitles = new String[count];
+        mPosters = new String[count];
+        mRanks = new long[count];
+    }
+
+    /**
+     * Reads all the rows of the cursor, which is left open.
+     */
+    public static MovieRows fromCursor(Cursor cursor) {
+        MovieRowReader reader = new MovieRowReader(cursor);
+        MovieRows rows = new MovieRows(reader.getCount());
+        int i = 0;
+        reader.moveToPosition(-1);
+        while (reader.moveToNext()) {
+            rows.mIds[i] = reader.getId();
+            rows.mTitles[i] = reader.getTitle();
+            rows.mPosters[i] = reader.getPoster();
+            rows.mRanks[i] = reader.getRank();
+            i++;
+        }
+        return rows;
+    }
+
+    @Override
+    public int size() {
+        return mIds.length;
+    }
+
+    @Override
+    public boolean isLoaded(int position) {
+        return true;
+    }
+
+    @Override
+    public long getId(int position) {
+        return mIds[position];
+    }
+
+    @Override
+    public String getTitle(int position) {
+        return mTitles[position];
+    }
+
+    @Override
+    public String getPoster(int position) {
+        return mPosters[position];
+    }
+
+    @Override
+    public long getRank(int position) {
+        return mRanks[position];
+    }
+
+    // true if the row shows the same content, whatever its position
+    private boolean sameContent(int position, MovieRows other, int otherPosition) {
+        return TextUtils.equals(mTitles[position], other.mTitles[otherPosition])
+                && TextUtils.equals(mPosters[position], other.mPosters[otherPosition]);
+    }
+
+    /**
+     * Computes the changes turning these rows into the new ones. The rows
+     * both lists start and end with are kept, and only those among them
+     * whose content changed are rebound. The rows in between are other
+     * movies, so they are removed and the new ones inserted in their
+     * place. This covers the usual cases with a range or two: a page
+     * appended or dropped, a movie moving in the ranking, or a sync
+     * refreshing a few posters.
+     */
+    public Diff diff(MovieRows newRows) {
+        int oldSize = size();
+        int newSize = newRows.size();
+
+        // rows kept at the start
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize && mIds[prefix] == newRows.mIds[prefix]) {
+            prefix++;
+        }
+        // rows kept at the end, not overlapping the start
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < newSize - prefix
+                && mIds[oldSize - 1 - suffix] == newRows.mIds[newSize - 1 - suffix]) {
+            suffix++;
+        }
+
+        boolean[] changed = new boolean[prefix + suffix];
+        for (int i = 0; i < prefix; i++) {
+            changed[i] = !sameContent(i, newRows, i);
+        }
+        for (int i = 0; i < suffix; i++) {
+            changed[prefix + i] = !sameContent(oldSize - suffix + i, newRows, newSize - suffix + i);
+        }
+        return new Diff(this, newRows, prefix, suffix, changed);
+    }
+
+    /**
+     * Changes between two lists of rows, as computed by {@link #diff(MovieRows)}.
+     */
+    public static class Diff {
+        private final MovieRows mOldRows;
+        private final MovieRows mNewRows;
+        private final int mPrefix;
+        private final int mSuffix;
+        // for each kept row, in order: the prefix then the suffix
+        private final boolean[] mChanged;
+
+        private Diff(MovieRows oldRows, MovieRows newRows, int prefix, int suffix, boolean[] changed) {
+            mOldRows = oldRows;
+            mNewRows = newRows;
+            mPrefix = prefix;
+            mSuffix = suffix;
+            mChanged = changed;
+        }
+
+        public MovieRows getOldRows() {
+            return mOldRows;
+        }
+
+        public MovieRows getNewRows() {
+            return mNewRows;
+        }
+
+        /**
+         * @return true if the new rows show the same as the old ones
+         */
+        public boolean isEmpty() {
+            if (mOldRows.size() != mNewRows.size() || mPrefix != mNewRows.size()) {
+                return false;
+            }
+            for (boolean changed : mChanged) {
+                if (changed) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Notifies the adapter of the changes, in ranges of consecutive
+         * positions. The adapter must already return the new rows.
+         */
+        public void dispatchTo(RecyclerView.Adapter<?> adapter) {
+            notifyChanged(adapter, 0, 0, mPrefix);
+
+            // the ids are stable, so the rows in between are other items,
+            // as for MovieAdapter#onRowsReplaced
+            int removed = mOldRows.size() - mPrefix - mSuffix;
+            int inserted = mNewRows.size() - mPrefix - mSuffix;
+            if (removed > 0) {
+                adapter.notifyItemRangeRemoved(mPrefix, removed);
+            }
+            if (inserted > 0) {
+                adapter.notifyItemRangeInserted(mPrefix, inserted);
+            }
+
+            notifyChanged(adapter, mPrefix, mNewRows.size() - mSuffix, mSuffix);
+        }
+
+        // notifies the runs of changed rows among count kept rows
+        private void notifyChanged(RecyclerView.Adapter<?> adapter, int flagOffset,
+                                   int position, int count) {
+            int start = -1;
+            for (int i = 0; i < count; i++) {
+                boolean changed = mChanged[flagOffset + i];
+                if (changed && start < 0) {
+                    start = i;
+                } else if (!changed && start >= 0) {
+                    adapter.notifyItemRangeChanged(position + start, i - start);
+                    start = -1;
+                }
+            }
+            if (start >= 0) {
+                adapter.notifyItemRangeChanged(position + start, count - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.movies.adapters;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.example.android.movies.data.MovieContract;
+
+import java.util.List;
+
+/**
+ * Loads the movies of a uri as {@link MovieRows}, along with their
+ * {@link MovieRows.Diff} from the rows shown before. Both the copy of
+ * the cursor and the diff are made on the loader thread, so a sync
+ * landing while the grid is on screen only costs the main thread the
+ * rebinding of the rows that changed. Like a CursorLoader, it loads
+ * again whenever the provider notifies a change of the rows.
+ *
+ * @author Ali K Thabet
+ */
+public class MovieRowsLoader extends AsyncTaskLoader<MovieRows.Diff> {
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private final Uri mUri;
+    private boolean mObserving;
+
+    // Rows of the last result delivered, the base of the next diff
+    private MovieRows mRows;
+    private MovieRows.Diff mResult;
+
+    /**
+     * @param shownRows rows the grid shows before the first load, e.g.
+     *                  those of the previous uri, or null for none
+     */
+    public MovieRowsLoader(Context context, Uri uri, MovieRows shownRows) {
+        super(context);
+        mUri = uri;
+        mRows = shownRows != null ? shownRows : MovieRows.EMPTY;
+    }
+
+    @Override
+    public MovieRows.Diff loadInBackground() {
+        Cursor cursor = getContext().getContentResolver().query(mUri,
+                MovieContract.MOVIE_COLUMNS, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            MovieRows rows = MovieRows.fromCursor(cursor);
+            // the previous rows are only replaced on delivery, on the main thread
+            MovieRows base;
+            synchronized (this) {
+                base = mRows;
+            }
+            return base.diff(rows);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(MovieRows.Diff result) {
+        if (isReset() || result == null) {
+            return;
+        }
+        synchronized (this) {
+            mRows = result.getNewRows();
+        }
+        mResult = result;
+        if (isStarted()) {
+            super.deliverResult(result);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            getContext().getContentResolver().registerContentObserver(getObservedUri(mUri), true, mObserver);
+            mObserving = true;
+        }
+        if (mResult != null) {
+            deliverResult(mResult);
+        }
+        if (takeContentChanged() || mResult == null) {
+            forceLoad();
+        }
+    }
+
+    // Uri the provider notifies when the rows of the uri change. Search
+    // results depend on every movie, so they are notified of any change.
+    private static Uri getObservedUri(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (!segments.isEmpty() && MovieContract.PATH_SEARCH.equals(segments.get(0))) {
+            return MovieContract.BASE_CONTENT_URI;
+        }
+        return uri;
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+        mResult = null;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.android.movies.adapters;
+
+/**
+ * Movies shown by the grid, by position. Either all the rows are in
+ * memory, as for {@link MovieRows}, or only some pages of them are, as
+ * for a {@link MoviePager}, and the others are shown as placeholders
+ * until they are loaded.
+ *
+ * @author Ali K Thabet
+ */
+public interface MovieSource {
+    int size();
+
+    /**
+     * @return true if the movie at the position is in memory, the other
+     * getters are only meaningful for those
+     */
+    boolean isLoaded(int position);
+
+    long getId(int position);
+
+    String getTitle(int position);
+
+    String getPoster(int position);
+
+    long getRank(int position);
+}
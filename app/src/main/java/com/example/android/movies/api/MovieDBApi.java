@@ -1,8 +1,6 @@
 package com.example.android.movies.api;
 
-import com.example.android.movies.api.results.MovieResults;
-import com.example.android.movies.api.results.ReviewResults;
-import com.example.android.movies.api.results.TrailerResults;
+import com.example.android.movies.api.results.MovieDetailResults;
 
 import retrofit.Call;
 import retrofit.http.GET;
@@ -17,12 +15,13 @@ import retrofit.http.Query;
 public interface MovieDBApi {
     String BASE_URL = "http://api.themoviedb.org/3/";
 
-    @GET("movie/{sort_by}")
-    Call<MovieResults> getMovieResults(@Path("sort_by") String sortBy, @Query("api_key") String apiKey);
+    // Endpoint names used to key coalesced requests
+    String ENDPOINT_DETAILS = "details";
 
-    @GET("movie/{id}/reviews")
-    Call<ReviewResults> getReviews(@Path("id") String id, @Query("api_key") String apiKey);
+    // Responses appended to the movie details, so they come in the same round trip
+    String APPEND_VIDEOS_REVIEWS = "videos,reviews";
 
-    @GET("movie/{id}/videos")
-    Call<TrailerResults> getTrailers(@Path("id") String id, @Query("api_key") String apiKey);
+    @GET("movie/{id}")
+    Call<MovieDetailResults> getMovieDetails(@Path("id") String id, @Query("api_key") String apiKey,
+                                             @Query("append_to_response") String append);
 }
@@ -0,0 +1,142 @@
+package com.example.android.movies.api;
+
+import android.content.Context;
+
+import com.example.android.movies.api.results.MovieDetailAdapter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.GsonConverterFactory;
+import retrofit.Retrofit;
+
+/**
+ * Process wide HTTP client for the MovieDB API. The sync adapter and
+ * the detail screen share a single {@link OkHttpClient}, so they reuse
+ * pooled keep-alive connections, get transparent gzip, and go through
+ * the same bounded on-disk response cache. The cache revalidates
+ * stale responses with their ETag / Last-Modified validators, so
+ * repeated requests are answered locally or with a 304.
+ * <p>
+ * Every request that reaches the network also takes a token from a
+ * shared {@link RateLimiter} sized to the API quota, so the sync and the
+ * UI together never go over it. Responses served from the cache don't
+ * count against the quota, so they don't take a token.
+ *
+ * @author Ali K Thabet
+ */
+public class MovieDBClient {
+    // Size bound of the on-disk response cache
+    private static final long CACHE_SIZE = 10 * 1024 * 1024; // 10 MiB
+    private static final String CACHE_DIR = "http";
+
+    // Connection pool and timeouts
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_DURATION_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final int TIMEOUT_SECONDS = 15;
+
+    // Request quota of the MovieDB API
+    private static final int QUOTA_REQUESTS = 40;
+    private static final int QUOTA_PERIOD_SECONDS = 10;
+
+    private static MovieDBClient sInstance;
+
+    private final OkHttpClient mHttpClient;
+    private final Gson mGson;
+    private final MovieDBApi mApi;
+    private final RequestCoalescer mCoalescer = new RequestCoalescer();
+    private final RateLimiter mRateLimiter =
+            new RateLimiter(QUOTA_REQUESTS, QUOTA_PERIOD_SECONDS, TimeUnit.SECONDS);
+    private final RequestExecutor mExecutor;
+
+    private MovieDBClient(Context context) {
+        mHttpClient = new OkHttpClient();
+        mHttpClient.setCache(new Cache(new File(context.getCacheDir(), CACHE_DIR), CACHE_SIZE));
+        mHttpClient.setConnectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MS));
+        mHttpClient.setConnectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        mHttpClient.setReadTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        mHttpClient.networkInterceptors().add(new RateLimitInterceptor());
+        mExecutor = new RequestExecutor(mHttpClient, mRateLimiter);
+
+        // the details are read by their streaming adapter
+        mGson = new GsonBuilder()
+                .registerTypeAdapterFactory(MovieDetailAdapter.FACTORY)
+                .create();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(MovieDBApi.BASE_URL)
+                .client(mHttpClient)
+                .addConverterFactory(GsonConverterFactory.create(mGson))
+                .build();
+        mApi = retrofit.create(MovieDBApi.class);
+    }
+
+    public static synchronized MovieDBClient getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MovieDBClient(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the shared client, for requests that are not
+     * covered by {@link MovieDBApi}
+     */
+    public OkHttpClient getHttpClient() {
+        return mHttpClient;
+    }
+
+    /**
+     * @return the Gson instance of the API, with the adapters of its responses
+     */
+    public Gson getGson() {
+        return mGson;
+    }
+
+    public MovieDBApi getApi() {
+        return mApi;
+    }
+
+    /**
+     * @return the coalescer used to share identical in flight calls
+     */
+    public RequestCoalescer getCoalescer() {
+        return mCoalescer;
+    }
+
+    /**
+     * @return the executor that retries failed requests on the shared client
+     */
+    public RequestExecutor getExecutor() {
+        return mExecutor;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return mRateLimiter;
+    }
+
+    // Takes a token from the rate limiter before each request sent to the
+    // server. As a network interceptor it is skipped by the responses of
+    // the cache, and runs again for each redirect or retry.
+    private class RateLimitInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            try {
+                mRateLimiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the rate limiter");
+            }
+            return chain.proceed(chain.request());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.android.movies.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by all the requests to the MovieDB API. The
+ * bucket holds up to the number of requests allowed per period and is
+ * refilled continuously, so bursts up to the quota go through at once
+ * and longer runs are spread at the sustained rate. When the server
+ * asks to slow down, {@link #pauseFor(long)} holds back every caller.
+ *
+ * @author Ali K Thabet
+ */
+public class RateLimiter {
+    private final int mCapacity;
+    private final double mNanosPerToken;
+
+    private double mTokens;
+    private long mLastRefill;
+    private long mPausedUntil;
+
+    /**
+     * @param permits number of requests allowed per period
+     * @param period length of the period
+     * @param unit unit of the period
+     */
+    public RateLimiter(int permits, long period, TimeUnit unit) {
+        mCapacity = permits;
+        mNanosPerToken = (double) unit.toNanos(period) / permits;
+        mTokens = permits;
+        mLastRefill = System.nanoTime();
+        mPausedUntil = mLastRefill;
+    }
+
+    /**
+     * Takes a token, waiting until one is available and any pause is over.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (true) {
+            long now = System.nanoTime();
+            refill(now);
+
+            long waitNanos;
+            if (now - mPausedUntil < 0) {
+                waitNanos = mPausedUntil - now;
+            } else if (mTokens >= 1) {
+                mTokens -= 1;
+                return;
+            } else {
+                waitNanos = (long) Math.ceil((1 - mTokens) * mNanosPerToken);
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+        }
+    }
+
+    /**
+     * Holds back all callers for the given delay and empties the bucket,
+     * so requests resume at the sustained rate afterwards.
+     */
+    public synchronized void pauseFor(long delayMillis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        if (until - mPausedUntil > 0) {
+            mPausedUntil = until;
+            mTokens = 0;
+            mLastRefill = until;
+        }
+        notifyAll();
+    }
+
+    private void refill(long now) {
+        if (now - mLastRefill > 0) {
+            mTokens = Math.min(mCapacity, mTokens + (now - mLastRefill) / mNanosPerToken);
+            mLastRefill = now;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.android.movies.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+import retrofit.Retrofit;
+
+/**
+ * Coalesces identical requests to the MovieDB API. Requests are keyed
+ * by (endpoint, movie id): while a call for a key is in flight, new
+ * callers for the same key are attached to it and get its result
+ * instead of starting a new call. Each caller gets a {@link Handle}
+ * to detach itself, which never cancels the shared call.
+ *
+ * @author Ali K Thabet
+ */
+public class RequestCoalescer {
+
+    /**
+     * Receives the result of a coalesced call
+     */
+    public interface Listener<T> {
+        /**
+         * @param result the response body, null if the request was not successful
+         */
+        void onResult(T result);
+
+        void onError(Throwable t);
+    }
+
+    /**
+     * Creates the call for a key, only invoked if no call is in flight
+     */
+    public interface CallFactory<T> {
+        Call<T> create();
+    }
+
+    /**
+     * Attachment of a single caller to a shared call
+     */
+    public interface Handle {
+        /**
+         * Stops delivering the result to this caller. The shared
+         * call keeps running for the other callers.
+         */
+        void cancel();
+    }
+
+    private final Map<String, InFlight<?>> mInFlight = new HashMap<>();
+
+    // Counters of requests made by callers and calls that hit the network
+    private int mRequestCount;
+    private int mNetworkCallCount;
+
+    public <T> Handle enqueue(String endpoint, String id,
+                              CallFactory<T> factory, Listener<T> listener) {
+        final String key = endpoint + "/" + id;
+        final InFlight<T> inFlight;
+        boolean start = false;
+
+        synchronized (this) {
+            mRequestCount++;
+            @SuppressWarnings("unchecked")
+            InFlight<T> existing = (InFlight<T>) mInFlight.get(key);
+            if (existing == null) {
+                existing = new InFlight<>(key);
+                mInFlight.put(key, existing);
+                mNetworkCallCount++;
+                start = true;
+            }
+            inFlight = existing;
+            inFlight.listeners.add(listener);
+        }
+
+        if (start) {
+            factory.create().enqueue(inFlight);
+        }
+        return new ListenerHandle<>(inFlight, listener);
+    }
+
+    public synchronized int getRequestCount() {
+        return mRequestCount;
+    }
+
+    public synchronized int getNetworkCallCount() {
+        return mNetworkCallCount;
+    }
+
+    /**
+     * @return number of requests that were served by a call already in flight
+     */
+    public synchronized int getSavedCallCount() {
+        return mRequestCount - mNetworkCallCount;
+    }
+
+    // Removes the call from the in flight map and returns
+    // the listeners that are still attached to it
+    private synchronized <T> List<Listener<T>> complete(InFlight<T> inFlight) {
+        mInFlight.remove(inFlight.key);
+        List<Listener<T>> listeners = new ArrayList<>(inFlight.listeners);
+        inFlight.listeners.clear();
+        return listeners;
+    }
+
+    private synchronized <T> void detach(InFlight<T> inFlight, Listener<T> listener) {
+        inFlight.listeners.remove(listener);
+    }
+
+    private class InFlight<T> implements Callback<T> {
+        final String key;
+        final List<Listener<T>> listeners = new ArrayList<>();
+
+        InFlight(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void onResponse(Response<T> response, Retrofit retrofit) {
+            for (Listener<T> listener : complete(this)) {
+                listener.onResult(response.body());
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            for (Listener<T> listener : complete(this)) {
+                listener.onError(t);
+            }
+        }
+    }
+
+    private class ListenerHandle<T> implements Handle {
+        private final InFlight<T> mCall;
+        private final Listener<T> mListener;
+
+        ListenerHandle(InFlight<T> call, Listener<T> listener) {
+            mCall = call;
+            mListener = listener;
+        }
+
+        @Override
+        public void cancel() {
+            detach(mCall, mListener);
+        }
+    }
+}
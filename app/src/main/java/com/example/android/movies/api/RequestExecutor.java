@@ -0,0 +1,131 @@
+package com.example.android.movies.api;
+
+import android.util.Log;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes requests to the MovieDB API with retries. Network errors,
+ * server errors and rate limit responses (429) are retried with a
+ * jittered exponential backoff. A Retry-After header takes precedence
+ * over the backoff and pauses the shared {@link RateLimiter}, so all
+ * the other requests wait as well instead of hitting the limit again.
+ *
+ * @author Ali K Thabet
+ */
+public class RequestExecutor {
+    private static final String LOG_TAG = RequestExecutor.class.getSimpleName();
+
+    public static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    // Attempts of a request, including the first one
+    private static final int MAX_ATTEMPTS = 4;
+
+    // Bounds of the backoff between attempts
+    private static final long BASE_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = TimeUnit.SECONDS.toMillis(32);
+
+    // Longest Retry-After honoured in place, longer ones are left to the caller
+    private static final long MAX_RETRY_AFTER_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final OkHttpClient mHttpClient;
+    private final RateLimiter mRateLimiter;
+    private final Random mRandom = new Random();
+
+    public RequestExecutor(OkHttpClient httpClient, RateLimiter rateLimiter) {
+        mHttpClient = httpClient;
+        mRateLimiter = rateLimiter;
+    }
+
+    /**
+     * Executes the request, retrying it while it fails with a retryable error.
+     *
+     * @return the first response that is not retryable, or the last
+     * response once all attempts are used. Its body must be closed.
+     * @throws IOException if the last attempt failed with a network error
+     */
+    public Response execute(Request request) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            Response response;
+            try {
+                response = mHttpClient.newCall(request).execute();
+            } catch (IOException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                Log.w(LOG_TAG, "Attempt " + attempt + " failed for " + request.httpUrl().encodedPath(), e);
+                Thread.sleep(getBackoff(attempt));
+                continue;
+            }
+
+            if (!isRetryable(response.code()) || attempt >= MAX_ATTEMPTS) {
+                return response;
+            }
+
+            long retryAfter = getRetryAfter(response);
+            if (retryAfter > MAX_RETRY_AFTER_MS) {
+                // too long to wait here, the caller reschedules
+                mRateLimiter.pauseFor(retryAfter);
+                return response;
+            }
+            response.body().close();
+
+            long delay;
+            if (retryAfter >= 0) {
+                mRateLimiter.pauseFor(retryAfter);
+                delay = retryAfter;
+            } else {
+                delay = getBackoff(attempt);
+            }
+            Log.w(LOG_TAG, "Error " + response.code() + " for " + request.httpUrl().encodedPath()
+                    + ", retrying in " + delay + " ms");
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * @return the delay requested by the Retry-After header of the
+     * response in milliseconds, or -1 if there is none
+     */
+    public static long getRetryAfter(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+
+        // either a number of seconds or an HTTP date
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            try {
+                Date date = format.parse(retryAfter.trim());
+                return Math.max(0, date.getTime() - System.currentTimeMillis());
+            } catch (ParseException pe) {
+                return -1;
+            }
+        }
+    }
+
+    public static boolean isRetryable(int code) {
+        return code == HTTP_TOO_MANY_REQUESTS || code >= 500;
+    }
+
+    // Full jitter: a random delay up to the exponential bound of the attempt
+    private long getBackoff(int attempt) {
+        long bound = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (attempt - 1));
+        return (long) (mRandom.nextDouble() * bound);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.android.movies.api.results;
+
+import com.example.android.movies.models.MovieItem;
+import com.example.android.movies.models.Review;
+import com.example.android.movies.models.Trailer;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Streaming adapter of the movie details response. The movie, its
+ * reviews and its videos are read in a single pass over the body,
+ * without reflection and skipping all the fields that are not stored.
+ * <p>
+ * It is registered through {@link #FACTORY} and only reads. Writing is
+ * left to the default adapter of the class, which Gson only builds if
+ * details are ever serialized.
+ *
+ * @author Ali K Thabet
+ */
+public class MovieDetailAdapter extends TypeAdapter<MovieDetailResults> {
+    // Names of the appended responses
+    private static final String MDB_REVIEWS = "reviews";
+    private static final String MDB_VIDEOS  = "videos";
+
+    private static final TypeToken<MovieDetailResults> TYPE = TypeToken.get(MovieDetailResults.class);
+
+    /**
+     * Factory to register on the Gson instance that reads the details.
+     */
+    public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (!TYPE.equals(type)) {
+                return null;
+            }
+            return (TypeAdapter<T>) new MovieDetailAdapter(gson, this);
+        }
+    };
+
+    private final Gson mGson;
+    private final TypeAdapterFactory mFactory;
+
+    private MovieDetailAdapter(Gson gson, TypeAdapterFactory factory) {
+        mGson = gson;
+        mFactory = factory;
+    }
+
+    @Override
+    public MovieDetailResults read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        MovieDetailResults details = new MovieDetailResults();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case MovieItem.MDB_ID:
+                    details.id = in.nextInt();
+                    break;
+                case MovieItem.MDB_TITLE:
+                    details.original_title = in.nextString();
+                    break;
+                case MovieItem.MDB_SYNP:
+                    details.overview = in.nextString();
+                    break;
+                case MovieItem.MDB_REL_DATE:
+                    details.release_date = in.nextString();
+                    break;
+                case MovieItem.MDB_POSTER:
+                    details.poster_path = in.nextString();
+                    break;
+                case MovieItem.MDB_RATING:
+                    details.vote_average = in.nextDouble();
+                    break;
+                case MovieItem.MDB_POPULARITY:
+                    details.popularity = in.nextDouble();
+                    break;
+                case MDB_REVIEWS:
+                    readResults(in, details.reviews, null);
+                    break;
+                case MDB_VIDEOS:
+                    readResults(in, null, details.videos);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return details;
+    }
+
+    // Reads the results array of an appended response into
+    // the list that is given, reviews or trailers
+    private static void readResults(JsonReader in, List<Review> reviews, List<Trailer> trailers)
+            throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            if (MovieItem.MDB_LIST.equals(in.nextName()) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    if (reviews != null) {
+                        reviews.add(readReview(in));
+                    } else {
+                        trailers.add(readTrailer(in));
+                    }
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private static Review readReview(JsonReader in) throws IOException {
+        String id = null;
+        String author = null;
+        String content = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = in.nextString();
+                    break;
+                case "author":
+                    author = in.nextString();
+                    break;
+                case "content":
+                    content = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Review(id, author, content);
+    }
+
+    private static Trailer readTrailer(JsonReader in) throws IOException {
+        String id = null;
+        String language = null;
+        String key = null;
+        String name = null;
+        String site = null;
+        int size = 0;
+        String type = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    id = in.nextString();
+                    break;
+                case "iso_639_1":
+                    language = in.nextString();
+                    break;
+                case "key":
+                    key = in.nextString();
+                    break;
+                case "name":
+                    name = in.nextString();
+                    break;
+                case "site":
+                    site = in.nextString();
+                    break;
+                case "size":
+                    size = in.nextInt();
+                    break;
+                case "type":
+                    type = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Trailer(id, language, key, name, site, size, type);
+    }
+
+    @Override
+    public void write(JsonWriter out, MovieDetailResults value) throws IOException {
+        // details are only ever read from the API, the default
+        // adapter is good enough for logging or debugging
+        mGson.getDelegateAdapter(mFactory, TYPE).write(out, value);
+    }
+}
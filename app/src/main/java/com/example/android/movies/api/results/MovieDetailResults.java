@@ -0,0 +1,79 @@
+package com.example.android.movies.api.results;
+
+import android.content.ContentValues;
+
+import com.example.android.movies.data.GeneralEntry;
+import com.example.android.movies.models.MovieItem;
+import com.example.android.movies.models.Review;
+import com.example.android.movies.models.Trailer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to store JSON results from Movie Details, with the
+ * reviews and trailers appended to the same response. It is read by
+ * {@link MovieDetailAdapter}, registered on the Gson of {@link
+ * com.example.android.movies.api.MovieDBClient}.
+ *
+ * @author Ali K Thabet
+ */
+public class MovieDetailResults {
+    public int id;
+    public String original_title;
+    public String overview;
+    public String release_date;
+    public String poster_path;
+    public Double vote_average;
+    public Double popularity;
+    public ArrayList<Review> reviews = new ArrayList<>();
+    public ArrayList<Trailer> videos = new ArrayList<>();
+
+    /**
+     * Values of the movie, with the same columns and defaults as the
+     * movies of the lists, so an unchanged movie keeps the same hash.
+     *
+     * @return the values, or null if the movie cannot be stored
+     */
+    public ContentValues getMovieValues() {
+        if (poster_path == null || original_title == null) {
+            return null;
+        }
+
+        ContentValues movie = new ContentValues();
+        movie.put(GeneralEntry._ID, id);
+        movie.put(GeneralEntry.COLUMN_TITLE, original_title);
+        movie.put(GeneralEntry.COLUMN_POSTER, poster_path);
+        movie.put(GeneralEntry.COLUMN_SYNOPSIS, overview != null ? overview : MovieItem.NO_SYNOPSIS);
+        movie.put(GeneralEntry.COLUMN_RELEASE_DATE, release_date != null ? release_date : "");
+        if (vote_average != null) {
+            movie.put(GeneralEntry.COLUMN_RATING, vote_average);
+        }
+        if (popularity != null) {
+            movie.put(GeneralEntry.COLUMN_POPULARITY, popularity);
+        }
+        return movie;
+    }
+
+    /**
+     * @param fetchedAt time in millis at which the details were downloaded
+     */
+    public ContentValues[] getReviewValues(long fetchedAt) {
+        List<ContentValues> values = new ArrayList<>(reviews.size());
+        for (Review review : reviews) {
+            values.add(review.getContentValues(fetchedAt));
+        }
+        return values.toArray(new ContentValues[values.size()]);
+    }
+
+    /**
+     * @param fetchedAt time in millis at which the details were downloaded
+     */
+    public ContentValues[] getTrailerValues(long fetchedAt) {
+        List<ContentValues> values = new ArrayList<>(videos.size());
+        for (Trailer trailer : videos) {
+            values.add(trailer.getContentValues(fetchedAt));
+        }
+        return values.toArray(new ContentValues[values.size()]);
+    }
+}
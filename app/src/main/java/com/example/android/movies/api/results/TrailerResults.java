@@ -1,15 +0,0 @@
-package com.example.android.movies.api.results;
-
-import com.example.android.movies.models.Trailer;
-
-import java.util.ArrayList;
-
-/**
- * Class to store JSON results from Movies Trailers
- *
- * @author Ali K Thabet
- */
-public class TrailerResults {
-    public int id;
-    public ArrayList<Trailer> results;
-}
@@ -0,0 +1,212 @@
+package com.example.android.movies.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseBooleanArray;
+
+import com.example.android.movies.data.MovieContract.MovieFavoriteEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process wide access to the favorite movies. The ids of the favorites
+ * are read once into memory, and all the reads and writes of the
+ * provider run on a background thread, so the UI never waits for the
+ * database to know or change whether a movie is a favorite. The ids are
+ * kept in a set of primitive ints, so the grid can check every cell it
+ * binds. The set follows the changes notified by the provider, whether
+ * they come from this class or from elsewhere, e.g. the sync.
+ * <p>
+ * All the methods must be called from the main thread, and listeners
+ * are notified on it.
+ *
+ * @author Ali K Thabet
+ */
+public class FavoritesRepository {
+    private static final String LOG_TAG = FavoritesRepository.class.getSimpleName();
+
+    /**
+     * Interface to be notified when the favorites are loaded or change.
+     */
+    public interface Listener {
+        void onFavoritesChanged();
+    }
+
+    private static FavoritesRepository sInstance;
+
+    private final ContentResolver mResolver;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> mListeners = new ArrayList<>();
+
+    // Ids of the favorite movies, only accessed from the main thread
+    private final IntHashSet mFavoriteIds = new IntHashSet();
+    private boolean mLoaded;
+    private boolean mLoading;
+    // The favorites changed while loading, the ids read may be stale
+    private boolean mStale;
+    // Changes made while loading, newer than the ids being read
+    private final SparseBooleanArray mChangesWhileLoading = new SparseBooleanArray();
+
+    // Reloads the ids when the favorite list changes, batching the
+    // notifications that arrive while a load is running
+    private final ContentObserver mObserver = new ContentObserver(mMainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            if (mLoading) {
+                mStale = true;
+            } else if (mLoaded) {
+                startLoad();
+            }
+        }
+    };
+
+    private FavoritesRepository(Context context) {
+        mResolver = context.getContentResolver();
+    }
+
+    public static synchronized FavoritesRepository getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new FavoritesRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Reads the favorite ids in the background, once. Listeners are
+     * notified when they are loaded.
+     */
+    public void load() {
+        if (mLoaded || mLoading) {
+            return;
+        }
+        // the set lives as long as the process, so does the observer
+        mResolver.registerContentObserver(MovieFavoriteEntry.CONTENT_URI, true, mObserver);
+        startLoad();
+    }
+
+    private void startLoad() {
+        mLoading = true;
+        mStale = false;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int[] ids = queryFavoriteIds();
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoaded(ids);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onLoaded(int[] ids) {
+        mFavoriteIds.clear();
+        for (int id : ids) {
+            mFavoriteIds.add(id);
+        }
+        for (int i = 0; i < mChangesWhileLoading.size(); i++) {
+            if (mChangesWhileLoading.valueAt(i)) {
+                mFavoriteIds.add(mChangesWhileLoading.keyAt(i));
+            } else {
+                mFavoriteIds.remove(mChangesWhileLoading.keyAt(i));
+            }
+        }
+        mChangesWhileLoading.clear();
+        mLoaded = true;
+        mLoading = false;
+        notifyListeners();
+
+        if (mStale) {
+            startLoad();
+        }
+    }
+
+    /**
+     * @return true once the favorite ids are in memory
+     */
+    public boolean isLoaded() {
+        return mLoaded;
+    }
+
+    public boolean isFavorite(int movieId) {
+        return mFavoriteIds.contains(movieId);
+    }
+
+    /**
+     * Adds the movie to the favorites or removes it. The change is seen
+     * at once by {@link #isFavorite(int)}, and written in the background.
+     *
+     * @param movieValues values of the movie, as stored in the lists
+     */
+    public void setFavorite(final int movieId, final ContentValues movieValues, final boolean favorite) {
+        boolean changed = favorite ? mFavoriteIds.add(movieId) : mFavoriteIds.remove(movieId);
+        if (!changed && mLoaded) {
+            // already stored this way
+            return;
+        }
+        if (mLoading) {
+            mChangesWhileLoading.put(movieId, favorite);
+        }
+        notifyListeners();
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (favorite) {
+                    mResolver.insert(MovieFavoriteEntry.CONTENT_URI, movieValues);
+                } else {
+                    mResolver.delete(MovieFavoriteEntry.buildMovieUri(movieId), null, null);
+                }
+            }
+        });
+    }
+
+    // Reads the ids of the favorite list, an index lookup of the list
+    private int[] queryFavoriteIds() {
+        Cursor cursor = mResolver.query(MovieFavoriteEntry.CONTENT_URI,
+                new String[] {GeneralEntry._ID},
+                null,
+                null,
+                null);
+        if (cursor == null) {
+            Log.e(LOG_TAG, "Failed to query the favorites");
+            return new int[0];
+        }
+        try {
+            int[] ids = new int[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getInt(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void notifyListeners() {
+        // a listener may remove itself when notified
+        for (Listener listener : new ArrayList<>(mListeners)) {
+            listener.onFavoritesChanged();
+        }
+    }
+}
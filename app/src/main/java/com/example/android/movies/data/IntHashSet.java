@@ -0,0 +1,117 @@
+package com.example.android.movies.data;
+
+/**
+ * Set of ints without boxing, for the ids looked up while binding the
+ * grid. Open addressing with linear probing in a power of two table
+ * kept at most half full, so a lookup is a hash and a few array reads.
+ *
+ * @author Ali K Thabet
+ */
+class IntHashSet {
+    // Marks a free slot. Movie ids are positive, so 0 is never stored.
+    private static final int FREE = 0;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] mSlots = new int[MIN_CAPACITY];
+    private int mSize;
+    private boolean mHasFree;
+
+    public int size() {
+        return mHasFree ? mSize + 1 : mSize;
+    }
+
+    public boolean contains(int value) {
+        if (value == FREE) {
+            return mHasFree;
+        }
+        int mask = mSlots.length - 1;
+        for (int i = hash(value) & mask; mSlots[i] != FREE; i = (i + 1) & mask) {
+            if (mSlots[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the value wasn't in the set
+     */
+    public boolean add(int value) {
+        if (value == FREE) {
+            boolean added = !mHasFree;
+            mHasFree = true;
+            return added;
+        }
+        if ((mSize + 1) * 2 > mSlots.length) {
+            resize(mSlots.length * 2);
+        }
+        int mask = mSlots.length - 1;
+        int i = hash(value) & mask;
+        for (; mSlots[i] != FREE; i = (i + 1) & mask) {
+            if (mSlots[i] == value) {
+                return false;
+            }
+        }
+        mSlots[i] = value;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * @return true if the value was in the set
+     */
+    public boolean remove(int value) {
+        if (value == FREE) {
+            boolean removed = mHasFree;
+            mHasFree = false;
+            return removed;
+        }
+        int mask = mSlots.length - 1;
+        int i = hash(value) & mask;
+        for (; mSlots[i] != value; i = (i + 1) & mask) {
+            if (mSlots[i] == FREE) {
+                return false;
+            }
+        }
+        mSlots[i] = FREE;
+        mSize--;
+
+        // move back the values of the run that follows, so that
+        // none of them is cut off from its hash slot by the hole
+        for (int j = (i + 1) & mask; mSlots[j] != FREE; j = (j + 1) & mask) {
+            int home = hash(mSlots[j]) & mask;
+            // the value stays if its home is cyclically in (i, j]
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!stays) {
+                mSlots[i] = mSlots[j];
+                mSlots[j] = FREE;
+                i = j;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        mSlots = new int[MIN_CAPACITY];
+        mSize = 0;
+        mHasFree = false;
+    }
+
+    private void resize(int capacity) {
+        int[] oldSlots = mSlots;
+        mSlots = new int[capacity];
+        mSize = 0;
+        for (int value : oldSlots) {
+            if (value != FREE) {
+                add(value);
+            }
+        }
+    }
+
+    // Spreads the ids, which are often close to each other
+    static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
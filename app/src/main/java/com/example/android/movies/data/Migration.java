@@ -0,0 +1,25 @@
+package com.example.android.movies.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Upgrade of the database from a version to the next one. Migrations
+ * are chained by {@link MovieDBHelper} to upgrade from any older version.
+ * <p>
+ * A migration runs against the schema of its own versions, which later
+ * versions may change, so it spells out its SQL instead of using the
+ * create statements of the current schema.
+ *
+ * @author Ali K Thabet
+ */
+interface Migration {
+    /**
+     * @return the version upgraded by this migration, to the next one
+     */
+    int getStartVersion();
+
+    /**
+     * Runs in the upgrade transaction opened by the helper
+     */
+    void migrate(SQLiteDatabase db);
+}
@@ -0,0 +1,39 @@
+package com.example.android.movies.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Adds the tables of the reviews and trailers of the movies.
+ *
+ * @author Ali K Thabet
+ */
+class Migration27To28 implements Migration {
+
+    @Override
+    public int getStartVersion() {
+        return 27;
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE review (" +
+                "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "movie_id INTEGER NOT NULL, " +
+                "review_id TEXT NOT NULL, " +
+                "author TEXT, " +
+                "content TEXT, " +
+                "fetched_at INTEGER NOT NULL, " +
+                "UNIQUE (movie_id, review_id) ON CONFLICT REPLACE);");
+
+        db.execSQL("CREATE TABLE trailer (" +
+                "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "movie_id INTEGER NOT NULL, " +
+                "trailer_id TEXT NOT NULL, " +
+                "key TEXT NOT NULL, " +
+                "name TEXT, " +
+                "site TEXT, " +
+                "type TEXT, " +
+                "fetched_at INTEGER NOT NULL, " +
+                "UNIQUE (movie_id, trailer_id) ON CONFLICT REPLACE);");
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.android.movies.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Merges the three movie tables into the movie table and the
+ * movie_list membership table. The popular movies were already in the
+ * movie table, the top rated and favorite movies are copied into it.
+ * Each list keeps the order in which it was shown.
+ *
+ * @author Ali K Thabet
+ */
+class Migration28To29 implements Migration {
+    private static final String MOVIE_COLUMNS =
+            "_id, title, release_date, rating, popularity, synopsis, poster, thumb";
+
+    @Override
+    public int getStartVersion() {
+        return 28;
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE movie_list (" +
+                "list TEXT NOT NULL, " +
+                "movie_id INTEGER NOT NULL, " +
+                "rank INTEGER NOT NULL, " +
+                "UNIQUE (list, movie_id) ON CONFLICT REPLACE, " +
+                "UNIQUE (list, rank) ON CONFLICT REPLACE);");
+        db.execSQL("CREATE INDEX movie_list_rank_idx ON movie_list (list, rank, movie_id);");
+        db.execSQL("CREATE INDEX movie_list_movie_idx ON movie_list (movie_id, list);");
+
+        // ranks follow the sort orders the lists were shown with
+        addMemberships(db, "movie", "popular", "popularity DESC");
+        addMemberships(db, "movie_rating", "top_rated", "rating DESC");
+        addMemberships(db, "movie_favorite", "favorite", "title ASC");
+
+        db.execSQL("INSERT OR REPLACE INTO movie (" + MOVIE_COLUMNS + ") " +
+                "SELECT " + MOVIE_COLUMNS + " FROM movie_rating");
+        db.execSQL("INSERT OR REPLACE INTO movie (" + MOVIE_COLUMNS + ") " +
+                "SELECT " + MOVIE_COLUMNS + " FROM movie_favorite");
+        db.execSQL("DROP TABLE movie_rating");
+        db.execSQL("DROP TABLE movie_favorite");
+    }
+
+    private static void addMemberships(SQLiteDatabase db, String tableName, String listName, String sortOrder) {
+        SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO movie_list (list, movie_id, rank) VALUES (?,?,?)");
+        Cursor cursor = db.query(tableName, new String[]{"_id"}, null, null, null, null, sortOrder);
+        try {
+            long rank = 0;
+            while (cursor.moveToNext()) {
+                insert.bindString(1, listName);
+                insert.bindLong(2, cursor.getLong(0));
+                insert.bindLong(3, rank++);
+                insert.executeInsert();
+            }
+        } finally {
+            cursor.close();
+            insert.close();
+        }
+    }
+}
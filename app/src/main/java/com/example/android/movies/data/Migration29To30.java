@@ -0,0 +1,22 @@
+package com.example.android.movies.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Adds the content hash of the movies. Existing rows have no hash,
+ * which the next sync fills in without rewriting their content.
+ *
+ * @author Ali K Thabet
+ */
+class Migration29To30 implements Migration {
+
+    @Override
+    public int getStartVersion() {
+        return 29;
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE movie ADD COLUMN content_hash INTEGER");
+    }
+}
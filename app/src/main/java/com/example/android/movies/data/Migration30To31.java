@@ -0,0 +1,34 @@
+package com.example.android.movies.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Adds the full-text index of the movies and indexes the stored ones.
+ *
+ * @author Ali K Thabet
+ */
+class Migration30To31 implements Migration {
+
+    @Override
+    public int getStartVersion() {
+        return 30;
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE movie_search USING fts4(title, synopsis);");
+
+        db.execSQL("CREATE TRIGGER movie_search_insert AFTER INSERT ON movie BEGIN " +
+                "DELETE FROM movie_search WHERE docid = new._id; " +
+                "INSERT INTO movie_search (docid, title, synopsis) " +
+                "VALUES (new._id, new.title, new.synopsis); END;");
+        db.execSQL("CREATE TRIGGER movie_search_update AFTER UPDATE OF title, synopsis ON movie BEGIN " +
+                "UPDATE movie_search SET title = new.title, synopsis = new.synopsis " +
+                "WHERE docid = new._id; END;");
+        db.execSQL("CREATE TRIGGER movie_search_delete AFTER DELETE ON movie BEGIN " +
+                "DELETE FROM movie_search WHERE docid = old._id; END;");
+
+        db.execSQL("INSERT INTO movie_search (docid, title, synopsis) " +
+                "SELECT _id, title, synopsis FROM movie;");
+    }
+}
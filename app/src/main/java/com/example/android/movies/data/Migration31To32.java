@@ -0,0 +1,30 @@
+package com.example.android.movies.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Keeps only the relative TMDB path of the posters, the URLs are built
+ * when the posters are shown. The stored hashes covered the full URLs,
+ * so they are cleared and the next sync fills them in without
+ * rewriting the content of the movies.
+ *
+ * @author Ali K Thabet
+ */
+class Migration31To32 implements Migration {
+    // URL prepended to the poster paths until this version
+    private static final String OLD_POSTER_BASE_URL = "http://image.tmdb.org/t/p/w185";
+
+    @Override
+    public int getStartVersion() {
+        return 31;
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        db.execSQL("UPDATE movie SET " +
+                        "poster = substr(poster, " + (OLD_POSTER_BASE_URL.length() + 1) + "), " +
+                        "content_hash = NULL " +
+                        "WHERE poster LIKE ?",
+                new Object[]{OLD_POSTER_BASE_URL + "/%"});
+    }
+}
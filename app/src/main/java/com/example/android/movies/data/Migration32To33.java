@@ -0,0 +1,29 @@
+package com.example.android.movies.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Records on each movie the time its details were fetched, so a movie
+ * without reviews or trailers isn't fetched again every time it is shown.
+ * Movies with stored reviews or trailers take the time of the oldest one.
+ *
+ * @author Ali K Thabet
+ */
+class Migration32To33 implements Migration {
+
+    @Override
+    public int getStartVersion() {
+        return 32;
+    }
+
+    @Override
+    public void migrate(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE movie ADD COLUMN details_fetched_at INTEGER;");
+
+        db.execSQL("UPDATE movie SET details_fetched_at = (SELECT MIN(fetched_at) FROM (" +
+                "SELECT movie_id, fetched_at FROM review " +
+                "UNION ALL " +
+                "SELECT movie_id, fetched_at FROM trailer) AS fetch " +
+                "WHERE fetch.movie_id = movie._id);");
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.android.movies.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Bundle;
+
+import com.example.android.movies.data.MovieContract.MovieListEntry;
+
+import java.util.Arrays;
+
+/**
+ * Columnar batch of movies to write, one array per column. A batch is
+ * filled row by row with {@link #add}, written to a {@link Bundle} as
+ * a handful of primitive and String arrays, and bound to the upsert
+ * statement of the provider without any intermediate object. Clearing
+ * a batch keeps its arrays, so one batch can be reused for many runs.
+ * <p>
+ * Missing ratings and popularities are stored as NaN, missing ranks as
+ * {@link #NO_RANK}.
+ *
+ * @author Ali K Thabet
+ */
+public class MovieBatch {
+    // Rank of a movie without a position in a list: written without
+    // one, or read from a search result
+    public static final long NO_RANK = -1;
+
+    // Columns of a movie in bind order, the id first
+    static final String[] COLUMNS = {
+            GeneralEntry._ID,
+            GeneralEntry.COLUMN_TITLE,
+            GeneralEntry.COLUMN_RELEASE_DATE,
+            GeneralEntry.COLUMN_RATING,
+            GeneralEntry.COLUMN_POPULARITY,
+            GeneralEntry.COLUMN_SYNOPSIS,
+            GeneralEntry.COLUMN_POSTER,
+            GeneralEntry.COLUMN_THUMB
+    };
+
+    // Keys of the columns in a Bundle
+    private static final String KEY_SIZE          = "batch_size";
+    private static final String KEY_IDS           = "batch_ids";
+    private static final String KEY_TITLES        = "batch_titles";
+    private static final String KEY_RELEASE_DATES = "batch_release_dates";
+    private static final String KEY_RATINGS       = "batch_ratings";
+    private static final String KEY_POPULARITIES  = "batch_popularities";
+    private static final String KEY_SYNOPSES      = "batch_synopses";
+    private static final String KEY_POSTERS       = "batch_posters";
+    private static final String KEY_THUMBS        = "batch_thumbs";
+    private static final String KEY_RANKS         = "batch_ranks";
+
+    // FNV-1a parameters of the content hash
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private int mSize;
+    private long[] mIds;
+    private String[] mTitles;
+    private String[] mReleaseDates;
+    private double[] mRatings;
+    private double[] mPopularities;
+    private String[] mSynopses;
+    private String[] mPosters;
+    private String[] mThumbs;
+    private long[] mRanks;
+
+    public MovieBatch(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    private void allocate(int capacity) {
+        mIds = new long[capacity];
+        mTitles = new String[capacity];
+        mReleaseDates = new String[capacity];
+        mRatings = new double[capacity];
+        mPopularities = new double[capacity];
+        mSynopses = new String[capacity];
+        mPosters = new String[capacity];
+        mThumbs = new String[capacity];
+        mRanks = new long[capacity];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Empties the batch. The arrays are kept for the next rows, the
+     * strings they hold are released.
+     */
+    public void clear() {
+        Arrays.fill(mTitles, 0, mSize, null);
+        Arrays.fill(mReleaseDates, 0, mSize, null);
+        Arrays.fill(mSynopses, 0, mSize, null);
+        Arrays.fill(mPosters, 0, mSize, null);
+        Arrays.fill(mThumbs, 0, mSize, null);
+        mSize = 0;
+    }
+
+    /**
+     * Appends a movie.
+     *
+     * @param rating the rating, NaN if unknown
+     * @param popularity the popularity, NaN if unknown
+     * @param rank rank of the movie in its list, or {@link #NO_RANK}
+     */
+    public void add(long id, String title, String releaseDate, double rating, double popularity,
+                    String synopsis, String poster, String thumb, long rank) {
+        ensureCapacity(mSize + 1);
+        mIds[mSize] = id;
+        mTitles[mSize] = title;
+        mReleaseDates[mSize] = releaseDate;
+        mRatings[mSize] = rating;
+        mPopularities[mSize] = popularity;
+        mSynopses[mSize] = synopsis;
+        mPosters[mSize] = poster;
+        mThumbs[mSize] = thumb;
+        mRanks[mSize] = rank;
+        mSize++;
+    }
+
+    /**
+     * Appends a movie given as values, e.g. by an insert in the provider.
+     */
+    public void add(ContentValues values) {
+        Long id = values.getAsLong(GeneralEntry._ID);
+        if (id == null) {
+            throw new IllegalArgumentException("Movie without id: " + values);
+        }
+        Double rating = values.getAsDouble(GeneralEntry.COLUMN_RATING);
+        Double popularity = values.getAsDouble(GeneralEntry.COLUMN_POPULARITY);
+        Long rank = values.getAsLong(MovieListEntry.COLUMN_RANK);
+        add(id,
+                values.getAsString(GeneralEntry.COLUMN_TITLE),
+                values.getAsString(GeneralEntry.COLUMN_RELEASE_DATE),
+                rating != null ? rating : Double.NaN,
+                popularity != null ? popularity : Double.NaN,
+                values.getAsString(GeneralEntry.COLUMN_SYNOPSIS),
+                values.getAsString(GeneralEntry.COLUMN_POSTER),
+                values.getAsString(GeneralEntry.COLUMN_THUMB),
+                rank != null ? rank : NO_RANK);
+    }
+
+    /**
+     * Appends all the movies of another batch.
+     */
+    public void addAll(MovieBatch other) {
+        ensureCapacity(mSize + other.mSize);
+        System.arraycopy(other.mIds, 0, mIds, mSize, other.mSize);
+        System.arraycopy(other.mTitles, 0, mTitles, mSize, other.mSize);
+        System.arraycopy(other.mReleaseDates, 0, mReleaseDates, mSize, other.mSize);
+        System.arraycopy(other.mRatings, 0, mRatings, mSize, other.mSize);
+        System.arraycopy(other.mPopularities, 0, mPopularities, mSize, other.mSize);
+        System.arraycopy(other.mSynopses, 0, mSynopses, mSize, other.mSize);
+        System.arraycopy(other.mPosters, 0, mPosters, mSize, other.mSize);
+        System.arraycopy(other.mThumbs, 0, mThumbs, mSize, other.mSize);
+        System.arraycopy(other.mRanks, 0, mRanks, mSize, other.mSize);
+        mSize += other.mSize;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, mIds.length * 2);
+        mIds = Arrays.copyOf(mIds, newCapacity);
+        mTitles = Arrays.copyOf(mTitles, newCapacity);
+        mReleaseDates = Arrays.copyOf(mReleaseDates, newCapacity);
+        mRatings = Arrays.copyOf(mRatings, newCapacity);
+        mPopularities = Arrays.copyOf(mPopularities, newCapacity);
+        mSynopses = Arrays.copyOf(mSynopses, newCapacity);
+        mPosters = Arrays.copyOf(mPosters, newCapacity);
+        mThumbs = Arrays.copyOf(mThumbs, newCapacity);
+        mRanks = Arrays.copyOf(mRanks, newCapacity);
+    }
+
+    public long getId(int row) {
+        return mIds[row];
+    }
+
+    public String getTitle(int row) {
+        return mTitles[row];
+    }
+
+    public String getReleaseDate(int row) {
+        return mReleaseDates[row];
+    }
+
+    public double getRating(int row) {
+        return mRatings[row];
+    }
+
+    public double getPopularity(int row) {
+        return mPopularities[row];
+    }
+
+    public String getSynopsis(int row) {
+        return mSynopses[row];
+    }
+
+    public String getPoster(int row) {
+        return mPosters[row];
+    }
+
+    public String getThumb(int row) {
+        return mThumbs[row];
+    }
+
+    public long getRank(int row) {
+        return mRanks[row];
+    }
+
+    /**
+     * Writes the batch to the bundle. The arrays are put as they are,
+     * so the batch must not be changed until the bundle is sent.
+     */
+    public void writeTo(Bundle bundle) {
+        bundle.putInt(KEY_SIZE, mSize);
+        bundle.putLongArray(KEY_IDS, mIds);
+        bundle.putStringArray(KEY_TITLES, mTitles);
+        bundle.putStringArray(KEY_RELEASE_DATES, mReleaseDates);
+        bundle.putDoubleArray(KEY_RATINGS, mRatings);
+        bundle.putDoubleArray(KEY_POPULARITIES, mPopularities);
+        bundle.putStringArray(KEY_SYNOPSES, mSynopses);
+        bundle.putStringArray(KEY_POSTERS, mPosters);
+        bundle.putStringArray(KEY_THUMBS, mThumbs);
+        bundle.putLongArray(KEY_RANKS, mRanks);
+    }
+
+    /**
+     * Reads a batch written by {@link #writeTo(Bundle)}, using the arrays
+     * of the bundle without copying them.
+     *
+     * @return the batch, or null if the bundle holds none
+     */
+    public static MovieBatch readFrom(Bundle bundle) {
+        if (bundle == null || !bundle.containsKey(KEY_IDS)) {
+            return null;
+        }
+        MovieBatch batch = new MovieBatch(0);
+        batch.mIds = bundle.getLongArray(KEY_IDS);
+        batch.mTitles = bundle.getStringArray(KEY_TITLES);
+        batch.mReleaseDates = bundle.getStringArray(KEY_RELEASE_DATES);
+        batch.mRatings = bundle.getDoubleArray(KEY_RATINGS);
+        batch.mPopularities = bundle.getDoubleArray(KEY_POPULARITIES);
+        batch.mSynopses = bundle.getStringArray(KEY_SYNOPSES);
+        batch.mPosters = bundle.getStringArray(KEY_POSTERS);
+        batch.mThumbs = bundle.getStringArray(KEY_THUMBS);
+        batch.mRanks = bundle.getLongArray(KEY_RANKS);
+        batch.mSize = bundle.getInt(KEY_SIZE);
+        if (batch.mSize > batch.mIds.length) {
+            throw new IllegalArgumentException("Batch of " + batch.mSize + " movies with "
+                    + batch.mIds.length + " ids");
+        }
+        return batch;
+    }
+
+    /**
+     * Binds a movie to an upsert statement of the {@link #COLUMNS}
+     * followed by the content hash. Bind indices start at 1.
+     */
+    void bind(SQLiteStatement statement, int row) {
+        statement.clearBindings();
+        statement.bindLong(1, mIds[row]);
+        bindString(statement, 2, mTitles[row]);
+        bindString(statement, 3, mReleaseDates[row]);
+        bindDouble(statement, 4, mRatings[row]);
+        bindDouble(statement, 5, mPopularities[row]);
+        bindString(statement, 6, mSynopses[row]);
+        bindString(statement, 7, mPosters[row]);
+        bindString(statement, 8, mThumbs[row]);
+        statement.bindLong(COLUMNS.length + 1, computeHash(row));
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static void bindDouble(SQLiteStatement statement, int index, double value) {
+        if (Double.isNaN(value)) {
+            statement.bindNull(index);
+        } else {
+            statement.bindDouble(index, value);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the content columns of a movie, in the order
+     * of the {@link #COLUMNS}. The id is the key of the row and not part
+     * of its content. Strings are hashed char by char and numbers by
+     * their bits, so hashing allocates nothing. The hashes are stored, so
+     * changing them makes the next sync rewrite every movie.
+     */
+    public long computeHash(int row) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hashString(hash, mTitles[row]);
+        hash = hashString(hash, mReleaseDates[row]);
+        hash = hashDouble(hash, mRatings[row]);
+        hash = hashDouble(hash, mPopularities[row]);
+        hash = hashString(hash, mSynopses[row]);
+        hash = hashString(hash, mPosters[row]);
+        hash = hashString(hash, mThumbs[row]);
+        return hash;
+    }
+
+    private static long hashString(long hash, String value) {
+        if (value == null) {
+            hash = hash * FNV_PRIME;
+        } else {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // column separator
+        return (hash ^ 0x1f) * FNV_PRIME;
+    }
+
+    private static long hashDouble(long hash, double value) {
+        if (Double.isNaN(value)) {
+            // missing, a single byte so that it differs from any number
+            hash = (hash ^ 0xff) * FNV_PRIME;
+        } else {
+            long bits = Double.doubleToLongBits(value);
+            for (int i = 0; i < 8; i++) {
+                hash = (hash ^ (bits & 0xff)) * FNV_PRIME;
+                bits >>>= 8;
+            }
+        }
+        return (hash ^ 0x1f) * FNV_PRIME;
+    }
+}
@@ -3,11 +3,15 @@ package com.example.android.movies.data;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.net.Uri;
+import android.provider.BaseColumns;
 
 /**
  * Define table and column names for Popular Movies DB
  *
- * TODO: Merge all 3 tables into one and add foreign key constraints
+ * Movies are stored once in the movie table. The popular, top rated
+ * and favorite lists only record which movies belong to them, and at
+ * which rank, in the movie_list table. Each list keeps its own content
+ * URI, which the provider serves as a join of both tables.
  *
  * @author Ali K Thabet
  */
@@ -21,7 +25,8 @@ public class MovieContract {
             GeneralEntry.COLUMN_RATING,
             GeneralEntry.COLUMN_POPULARITY,
             GeneralEntry.COLUMN_POSTER,
-            GeneralEntry.COLUMN_THUMB
+            GeneralEntry.COLUMN_THUMB,
+            MovieListEntry.COLUMN_RANK
     };
 
     // corresponding indices of projection
@@ -33,6 +38,59 @@ public class MovieContract {
     public static final int COL_MOVIE_POPULARITY = 5;
     public static final int COL_MOVIE_POSTER = 6;
     public static final int COL_MOVIE_THUMB = 7;
+    public static final int COL_MOVIE_RANK = 8;
+
+    // projection of the detail screen: the movie, and the time its
+    // details were last fetched, null if they never were
+    public static final String[] DETAIL_COLUMNS = {
+            GeneralEntry._ID,
+            GeneralEntry.COLUMN_TITLE,
+            GeneralEntry.COLUMN_RELEASE_DATE,
+            GeneralEntry.COLUMN_SYNOPSIS,
+            GeneralEntry.COLUMN_RATING,
+            GeneralEntry.COLUMN_POPULARITY,
+            GeneralEntry.COLUMN_POSTER,
+            GeneralEntry.COLUMN_THUMB,
+            MovieListEntry.COLUMN_RANK,
+            MovieEntry.COLUMN_DETAILS_FETCHED_AT
+    };
+
+    // index of the fetch time, the others are those of MOVIE_COLUMNS
+    public static final int COL_DETAIL_FETCHED_AT = 9;
+
+    // projection of reviews to retrieve from DB
+    public static final String[] REVIEW_COLUMNS = {
+            ReviewEntry._ID,
+            ReviewEntry.COLUMN_REVIEW_ID,
+            ReviewEntry.COLUMN_AUTHOR,
+            ReviewEntry.COLUMN_CONTENT,
+            ReviewEntry.COLUMN_FETCHED_AT
+    };
+
+    // corresponding indices of projection
+    public static final int COL_REVIEW_ID = 1;
+    public static final int COL_REVIEW_AUTHOR = 2;
+    public static final int COL_REVIEW_CONTENT = 3;
+    public static final int COL_REVIEW_FETCHED_AT = 4;
+
+    // projection of trailers to retrieve from DB
+    public static final String[] TRAILER_COLUMNS = {
+            TrailerEntry._ID,
+            TrailerEntry.COLUMN_TRAILER_ID,
+            TrailerEntry.COLUMN_KEY,
+            TrailerEntry.COLUMN_NAME,
+            TrailerEntry.COLUMN_SITE,
+            TrailerEntry.COLUMN_TYPE,
+            TrailerEntry.COLUMN_FETCHED_AT
+    };
+
+    // corresponding indices of projection
+    public static final int COL_TRAILER_ID = 1;
+    public static final int COL_TRAILER_KEY = 2;
+    public static final int COL_TRAILER_NAME = 3;
+    public static final int COL_TRAILER_SITE = 4;
+    public static final int COL_TRAILER_TYPE = 5;
+    public static final int COL_TRAILER_FETCHED_AT = 6;
 
     // The content authority for the Popular Movies App
     public static final String CONTENT_AUTHORITY = "com.example.android.movies.app";
@@ -45,9 +103,100 @@ public class MovieContract {
     public static final String PATH_MOVIE          = "movie";
     public static final String PATH_MOVIE_RATING   = "movie_rating";
     public static final String PATH_MOVIE_FAVORITE = "movie_favorite";
+    public static final String PATH_REVIEW         = "review";
+    public static final String PATH_TRAILER        = "trailer";
+    public static final String PATH_SEARCH         = "search";
+
+    // Query parameters of the list URIs for keyset pagination:
+    // only movies ranked after QUERY_AFTER_RANK, at most QUERY_LIMIT of them
+    public static final String QUERY_AFTER_RANK = "after_rank";
+    public static final String QUERY_LIMIT      = "limit";
+    // Number of movies skipped before the QUERY_LIMIT ones, for a page
+    // whose previous page isn't known
+    public static final String QUERY_OFFSET     = "offset";
 
-//    Inner class that defines the contents of the movie table
-//    sorted by popularity
+    // Provider method that checkpoints the write ahead log of the database,
+    // its argument is the checkpoint mode
+    public static final String METHOD_CHECKPOINT = "checkpoint";
+
+    // Checkpoint modes, see https://www.sqlite.org/pragma.html#pragma_wal_checkpoint
+    public static final String CHECKPOINT_PASSIVE = "PASSIVE";
+    public static final String CHECKPOINT_FULL    = "FULL";
+    public static final String CHECKPOINT_RESTART = "RESTART";
+
+    // Provider method that writes a batch of movies of a list, only changing
+    // what differs from the stored rows. Its argument is the uri of the list
+    // and the movies are passed in the extras as a MovieBatch, see
+    // MovieBatch#writeTo. It returns the statistics of the write under
+    // the STAT_ keys.
+    public static final String METHOD_SYNC_LIST = "sync_list";
+
+    public static final String STAT_FETCHED   = "fetched";
+    public static final String STAT_UNCHANGED = "unchanged";
+    public static final String STAT_UPDATED   = "updated";
+    public static final String STAT_INSERTED  = "inserted";
+    public static final String STAT_REMOVED   = "removed";
+
+    // Provider method that counts the movies of a list, from the list table
+    // alone. Its argument is the uri of the list, and it returns the count
+    // under EXTRA_COUNT.
+    public static final String METHOD_COUNT_LIST = "count_list";
+    public static final String EXTRA_COUNT       = "count";
+
+    // Provider method that updates the changed columns of the movies of a
+    // list, without changing the list itself. Its argument is the uri of the
+    // list and the movies are passed in the extras as a MovieBatch, movies
+    // that are not in the list are ignored. It returns the fetched,
+    // unchanged and updated counts under the STAT_ keys.
+    public static final String METHOD_UPDATE_MOVIES = "update_movies";
+
+    // Provider method that stores the details of a movie in one transaction.
+    // Its argument is the movie id, the changed columns of the movie are
+    // updated from EXTRA_MOVIE if it is stored, and its reviews and trailers
+    // are replaced by the ContentValues arrays in EXTRA_REVIEWS and EXTRA_TRAILERS.
+    // The movie records EXTRA_FETCHED_AT, or the current time, as the time
+    // of its details, even when they have no reviews or trailers.
+    public static final String METHOD_STORE_DETAILS = "store_details";
+    public static final String EXTRA_MOVIE          = "movie";
+    public static final String EXTRA_REVIEWS        = "reviews";
+    public static final String EXTRA_TRAILERS       = "trailers";
+    public static final String EXTRA_FETCHED_AT     = "fetched_at";
+
+    /**
+     * Builds the uri of a page of a list. Lists are returned in rank
+     * order, so the next page starts after the rank of the last movie
+     * of the current page.
+     *
+     * @param listUri content uri of the list
+     * @param afterRank rank of the last movie already loaded, -1 for the first page
+     * @param limit maximum number of movies in the page
+     */
+    public static Uri buildListPageUri(Uri listUri, long afterRank, int limit) {
+        return listUri.buildUpon()
+                .appendQueryParameter(QUERY_AFTER_RANK, String.valueOf(afterRank))
+                .appendQueryParameter(QUERY_LIMIT, String.valueOf(limit))
+                .build();
+    }
+
+    /**
+     * Builds the uri of a page of a list from its position. The skipped
+     * movies are still walked through in the index, so this is only for
+     * pages reached without their previous one, see
+     * {@link #buildListPageUri(Uri, long, int)}.
+     *
+     * @param listUri content uri of the list
+     * @param offset position of the first movie of the page
+     * @param limit maximum number of movies in the page
+     */
+    public static Uri buildListOffsetPageUri(Uri listUri, int offset, int limit) {
+        return listUri.buildUpon()
+                .appendQueryParameter(QUERY_OFFSET, String.valueOf(offset))
+                .appendQueryParameter(QUERY_LIMIT, String.valueOf(limit))
+                .build();
+    }
+
+//    Inner class that defines the contents of the movie table.
+//    Its content URI is the list of movies sorted by popularity
     public static final class MovieEntry extends GeneralEntry {
 
         public static final Uri CONTENT_URI =
@@ -61,12 +210,23 @@ public class MovieContract {
         // Table name
         public static final String TABLE_NAME = "movie";
 
+        // Hash of the content columns of the row, used by the sync to
+        // skip the movies that haven't changed
+        public static final String COLUMN_HASH = "content_hash";
+
+        // Time the details of the movie were last fetched, null if they
+        // never were. Kept on the movie, since it may have no reviews or trailers.
+        public static final String COLUMN_DETAILS_FETCHED_AT = "details_fetched_at";
+
+        // Name of the list in the movie_list table
+        public static final String LIST_NAME = "popular";
+
         public static Uri buildMovieUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
     }
 
-    //    Inner class that defines the contents of the movie table
+    //    Inner class that defines the list of movies
     //    sorted by user rating
     public static final class MovieRatingEntry extends GeneralEntry {
 
@@ -78,15 +238,15 @@ public class MovieContract {
         public static final String CONTENT_ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_MOVIE_RATING;
 
-        // Table name
-        public static final String TABLE_NAME = "movie_rating";
+        // Name of the list in the movie_list table
+        public static final String LIST_NAME = "top_rated";
 
         public static Uri buildMovieUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
     }
 
-    //    Inner class that defines the contents of the movie table
+    //    Inner class that defines the list
     //    of user's favorite movies
     public static final class MovieFavoriteEntry extends GeneralEntry {
 
@@ -98,9 +258,116 @@ public class MovieContract {
         public static final String CONTENT_ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_MOVIE_FAVORITE;
 
+        // Name of the list in the movie_list table
+        public static final String LIST_NAME = "favorite";
+
+        public static Uri buildMovieUri(long id) {
+            return ContentUris.withAppendedId(CONTENT_URI, id);
+        }
+    }
+
+    //    Inner class that defines the membership of movies in lists.
+    //    Each row puts a movie at a rank of a list
+    public static final class MovieListEntry {
+
         // Table name
-        public static final String TABLE_NAME = "movie_favorite";
+        public static final String TABLE_NAME = "movie_list";
+
+        // Name of the list, one of the LIST_NAME of the entries above
+        public static final String COLUMN_LIST = "list";
+        // ID of the movie in the movie table
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+        // Position of the movie in the list, as returned by MovieDB
+        public static final String COLUMN_RANK = "rank";
+    }
+
+    //    Inner class that defines the contents of the review table.
+    //    Reviews are accessed by the id of the movie they belong to
+    public static final class ReviewEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_REVIEW).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_REVIEW;
+
+        // Table name
+        public static final String TABLE_NAME = "review";
+
+        // ID of the movie the review belongs to
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+        // ID of the review in MovieDB
+        public static final String COLUMN_REVIEW_ID = "review_id";
+        // Author of the review
+        public static final String COLUMN_AUTHOR = "author";
+        // Text of the review
+        public static final String COLUMN_CONTENT = "content";
+        // Time in millis at which the review was fetched
+        public static final String COLUMN_FETCHED_AT = "fetched_at";
+
+        public static Uri buildMovieReviewsUri(long movieId) {
+            return ContentUris.withAppendedId(CONTENT_URI, movieId);
+        }
+    }
+
+    //    Inner class that defines the contents of the trailer table.
+    //    Trailers are accessed by the id of the movie they belong to
+    public static final class TrailerEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_TRAILER).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_TRAILER;
+
+        // Table name
+        public static final String TABLE_NAME = "trailer";
+
+        // ID of the movie the trailer belongs to
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+        // ID of the trailer in MovieDB
+        public static final String COLUMN_TRAILER_ID = "trailer_id";
+        // Video key on the hosting site
+        public static final String COLUMN_KEY = "key";
+        // Name of the trailer
+        public static final String COLUMN_NAME = "name";
+        // Hosting site, e.g. YouTube
+        public static final String COLUMN_SITE = "site";
+        // Type of video, e.g. Trailer or Teaser
+        public static final String COLUMN_TYPE = "type";
+        // Time in millis at which the trailer was fetched
+        public static final String COLUMN_FETCHED_AT = "fetched_at";
+
+        public static Uri buildMovieTrailersUri(long movieId) {
+            return ContentUris.withAppendedId(CONTENT_URI, movieId);
+        }
+    }
+
+//    Inner class that defines the full-text index of the movies. Its content
+//    URI returns the movies matching a query, with the MOVIE_COLUMNS. The
+//    rank column is null, since the results are not a list.
+    public static final class SearchEntry {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SEARCH).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SEARCH;
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SEARCH;
+
+        // Table name, an FTS4 table whose docid is the movie id
+        public static final String TABLE_NAME = "movie_search";
+
+        // Query parameter with the text searched. Every word is matched
+        // as a prefix, and matches in the title come first.
+        public static final String QUERY_TEXT = "q";
+
+        public static Uri buildSearchUri(String text) {
+            return CONTENT_URI.buildUpon().appendQueryParameter(QUERY_TEXT, text).build();
+        }
 
+        // Uri of a movie found by a search, whatever the lists it belongs to
         public static Uri buildMovieUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
@@ -1,27 +1,134 @@
 package com.example.android.movies.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+
+import com.example.android.movies.data.MovieContract.MovieEntry;
+import com.example.android.movies.data.MovieContract.MovieListEntry;
+import com.example.android.movies.data.MovieContract.ReviewEntry;
+import com.example.android.movies.data.MovieContract.SearchEntry;
+import com.example.android.movies.data.MovieContract.TrailerEntry;
+
 /**
  * Manages a local database for movie data.
+ * <p>
+ * The database uses write ahead logging, so the list queries of the UI
+ * run on the pool of read connections and are not blocked by the
+ * transaction of a sync. The log is folded back into the database by
+ * automatic checkpoints on commit, and by {@link #checkpoint(String)}.
  *
  * @author Ali K Thabet
  */
 public class MovieDBHelper extends SQLiteOpenHelper {
 
     // Database version: increased every time schema changes
-    private static final int DATABASE_VERSION = 27;
+    private static final int DATABASE_VERSION = 33;
 
     // name of database
-    static final String DATABASE_NAME = "movie.db";
+    public static final String DATABASE_NAME = "movie.db";
+
+    // Tables used before all the lists were merged into the movie table
+    static final String LEGACY_RATING_TABLE = "movie_rating";
+    static final String LEGACY_FAVORITE_TABLE = "movie_favorite";
+
+    // Upgrades from each version to the next one. Versions older
+    // than the first migration are recreated from scratch.
+    private static final Migration[] MIGRATIONS = {
+            new Migration27To28(),
+            new Migration28To29(),
+            new Migration29To30(),
+            new Migration30To31(),
+            new Migration31To32(),
+            new Migration32To33()
+    };
+
+    // Page size of a new database, ignored for an existing one
+    private static final long PAGE_SIZE = 4096;
+
+    // Page cache of the connection used for writes
+    private static final int CACHE_SIZE_PAGES = 512; // 2 MiB
+
+    // Number of pages in the log after which a commit runs a passive
+    // checkpoint. This is the SQLite default, higher than the Android one,
+    // so a sync of several pages doesn't checkpoint after every list.
+    public static final int DEFAULT_AUTO_CHECKPOINT_PAGES = 1000;
+
+    private final int mAutoCheckpointPages;
 
     public MovieDBHelper(Context context) {
+        this(context, DEFAULT_AUTO_CHECKPOINT_PAGES);
+    }
+
+    /**
+     * @param autoCheckpointPages size of the log, in pages, after which a commit
+     *                            checkpoints it. 0 disables the automatic checkpoints,
+     *                            leaving them to {@link #checkpoint(String)}
+     */
+    public MovieDBHelper(Context context, int autoCheckpointPages) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mAutoCheckpointPages = autoCheckpointPages;
+    }
+
+    // Called before onCreate, so the page size still applies to a new database
+    @Override
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public void onConfigure(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.setPageSize(PAGE_SIZE);
+        sqLiteDatabase.enableWriteAheadLogging();
+        configureConnection(sqLiteDatabase);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase sqLiteDatabase) {
+        super.onOpen(sqLiteDatabase);
+        // onConfigure doesn't exist before Jelly Bean
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !sqLiteDatabase.isReadOnly()) {
+            sqLiteDatabase.enableWriteAheadLogging();
+            configureConnection(sqLiteDatabase);
+        }
+    }
+
+    // Both pragmas apply to the connection they run on, which is the one used for writes
+    private void configureConnection(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("PRAGMA cache_size = " + CACHE_SIZE_PAGES);
+        // returns the new value, so it has to run as a query
+        DatabaseUtils.longForQuery(sqLiteDatabase,
+                "PRAGMA wal_autocheckpoint = " + mAutoCheckpointPages, null);
+    }
+
+    /**
+     * Copies the content of the write ahead log back into the database.
+     *
+     * @param mode one of {@link MovieContract#CHECKPOINT_PASSIVE},
+     *             {@link MovieContract#CHECKPOINT_FULL} or {@link MovieContract#CHECKPOINT_RESTART}
+     */
+    public void checkpoint(String mode) {
+        if (!MovieContract.CHECKPOINT_PASSIVE.equals(mode)
+                && !MovieContract.CHECKPOINT_FULL.equals(mode)
+                && !MovieContract.CHECKPOINT_RESTART.equals(mode)) {
+            throw new IllegalArgumentException("Unknown checkpoint mode: " + mode);
+        }
+
+        // checkpoint modes are not supported by the SQLite of older versions,
+        // where a checkpoint is always passive
+        String sql = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? "PRAGMA wal_checkpoint(" + mode + ")"
+                : "PRAGMA wal_checkpoint";
+        Cursor cursor = getWritableDatabase().rawQuery(sql, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
-    private void createTable(SQLiteDatabase sqLiteDatabase, String tableName) {
-        final String SQL_CREATE_TABLE = "CREATE TABLE " + tableName+ " (" +
+    private void createMovieTable(SQLiteDatabase sqLiteDatabase) {
+        final String SQL_CREATE_TABLE = "CREATE TABLE " + MovieEntry.TABLE_NAME + " (" +
                 GeneralEntry._ID + " INTEGER PRIMARY KEY," +
                 GeneralEntry.COLUMN_TITLE + " TEXT NOT NULL, " +
                 GeneralEntry.COLUMN_RELEASE_DATE + " TEXT, " +
@@ -30,32 +137,154 @@ public class MovieDBHelper extends SQLiteOpenHelper {
                 GeneralEntry.COLUMN_SYNOPSIS + " TEXT, " +
                 GeneralEntry.COLUMN_POSTER + " TEXT, " +
                 GeneralEntry.COLUMN_THUMB + " TEXT, " +
+                MovieEntry.COLUMN_HASH + " INTEGER, " +
+                MovieEntry.COLUMN_DETAILS_FETCHED_AT + " INTEGER, " +
                 "UNIQUE (" + GeneralEntry._ID + ") ON CONFLICT REPLACE);";
 
         sqLiteDatabase.execSQL(SQL_CREATE_TABLE);
     }
 
+    private void createMovieListTable(SQLiteDatabase sqLiteDatabase) {
+        // A movie appears at most once in a list and a rank holds at most
+        // one movie, so writing a movie at a new rank replaces both its
+        // old position and the movie previously found at that rank
+        final String SQL_CREATE_TABLE = "CREATE TABLE " + MovieListEntry.TABLE_NAME + " (" +
+                MovieListEntry.COLUMN_LIST + " TEXT NOT NULL, " +
+                MovieListEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                MovieListEntry.COLUMN_RANK + " INTEGER NOT NULL, " +
+                "UNIQUE (" + MovieListEntry.COLUMN_LIST + ", " +
+                MovieListEntry.COLUMN_MOVIE_ID + ") ON CONFLICT REPLACE, " +
+                "UNIQUE (" + MovieListEntry.COLUMN_LIST + ", " +
+                MovieListEntry.COLUMN_RANK + ") ON CONFLICT REPLACE);";
+
+        // Covering index to read a list in rank order without touching the table
+        final String SQL_CREATE_RANK_INDEX = "CREATE INDEX movie_list_rank_idx ON " +
+                MovieListEntry.TABLE_NAME + " (" +
+                MovieListEntry.COLUMN_LIST + ", " +
+                MovieListEntry.COLUMN_RANK + ", " +
+                MovieListEntry.COLUMN_MOVIE_ID + ");";
+
+        // Index to find the lists a movie belongs to
+        final String SQL_CREATE_MOVIE_INDEX = "CREATE INDEX movie_list_movie_idx ON " +
+                MovieListEntry.TABLE_NAME + " (" +
+                MovieListEntry.COLUMN_MOVIE_ID + ", " +
+                MovieListEntry.COLUMN_LIST + ");";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_RANK_INDEX);
+        sqLiteDatabase.execSQL(SQL_CREATE_MOVIE_INDEX);
+    }
+
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
 
         // Create a table to hold the movie data. Each movie item is defined
         // by an ID, title, release date, user rating, synopsis, and poster
         // and thumbnail paths
-        createTable(sqLiteDatabase, MovieContract.MovieEntry.TABLE_NAME);
-        createTable(sqLiteDatabase, MovieContract.MovieRatingEntry.TABLE_NAME);
-        createTable(sqLiteDatabase, MovieContract.MovieFavoriteEntry.TABLE_NAME);
+        createMovieTable(sqLiteDatabase);
+
+        // Create the table of the popular, top rated and favorite lists
+        createMovieListTable(sqLiteDatabase);
+
+        // Reviews and trailers of a movie, with the time they were fetched
+        // so they are only downloaded again once they are stale
+        final String SQL_CREATE_REVIEW_TABLE = "CREATE TABLE " + ReviewEntry.TABLE_NAME + " (" +
+                ReviewEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                ReviewEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                ReviewEntry.COLUMN_REVIEW_ID + " TEXT NOT NULL, " +
+                ReviewEntry.COLUMN_AUTHOR + " TEXT, " +
+                ReviewEntry.COLUMN_CONTENT + " TEXT, " +
+                ReviewEntry.COLUMN_FETCHED_AT + " INTEGER NOT NULL, " +
+                "UNIQUE (" + ReviewEntry.COLUMN_MOVIE_ID + ", " +
+                ReviewEntry.COLUMN_REVIEW_ID + ") ON CONFLICT REPLACE);";
+
+        final String SQL_CREATE_TRAILER_TABLE = "CREATE TABLE " + TrailerEntry.TABLE_NAME + " (" +
+                TrailerEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                TrailerEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                TrailerEntry.COLUMN_TRAILER_ID + " TEXT NOT NULL, " +
+                TrailerEntry.COLUMN_KEY + " TEXT NOT NULL, " +
+                TrailerEntry.COLUMN_NAME + " TEXT, " +
+                TrailerEntry.COLUMN_SITE + " TEXT, " +
+                TrailerEntry.COLUMN_TYPE + " TEXT, " +
+                TrailerEntry.COLUMN_FETCHED_AT + " INTEGER NOT NULL, " +
+                "UNIQUE (" + TrailerEntry.COLUMN_MOVIE_ID + ", " +
+                TrailerEntry.COLUMN_TRAILER_ID + ") ON CONFLICT REPLACE);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_REVIEW_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_TRAILER_TABLE);
+
+        // Full-text index of the titles and synopses
+        createSearchTable(sqLiteDatabase);
+    }
+
+    // The index is an FTS4 table whose docid is the movie id, kept in sync
+    // with the movie table by triggers. A movie replaced through its UNIQUE
+    // constraint doesn't fire the delete trigger, so the insert trigger
+    // removes the previous entry itself.
+    private void createSearchTable(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("CREATE VIRTUAL TABLE " + SearchEntry.TABLE_NAME + " USING fts4(" +
+                GeneralEntry.COLUMN_TITLE + ", " +
+                GeneralEntry.COLUMN_SYNOPSIS + ");");
+
+        sqLiteDatabase.execSQL("CREATE TRIGGER movie_search_insert AFTER INSERT ON " +
+                MovieEntry.TABLE_NAME + " BEGIN " +
+                "DELETE FROM " + SearchEntry.TABLE_NAME + " WHERE docid = new." + GeneralEntry._ID + "; " +
+                "INSERT INTO " + SearchEntry.TABLE_NAME + " (docid, " +
+                GeneralEntry.COLUMN_TITLE + ", " + GeneralEntry.COLUMN_SYNOPSIS + ") VALUES (new." +
+                GeneralEntry._ID + ", new." + GeneralEntry.COLUMN_TITLE + ", new." +
+                GeneralEntry.COLUMN_SYNOPSIS + "); END;");
+
+        sqLiteDatabase.execSQL("CREATE TRIGGER movie_search_update AFTER UPDATE OF " +
+                GeneralEntry.COLUMN_TITLE + ", " + GeneralEntry.COLUMN_SYNOPSIS + " ON " +
+                MovieEntry.TABLE_NAME + " BEGIN " +
+                "UPDATE " + SearchEntry.TABLE_NAME + " SET " +
+                GeneralEntry.COLUMN_TITLE + " = new." + GeneralEntry.COLUMN_TITLE + ", " +
+                GeneralEntry.COLUMN_SYNOPSIS + " = new." + GeneralEntry.COLUMN_SYNOPSIS +
+                " WHERE docid = new." + GeneralEntry._ID + "; END;");
+
+        sqLiteDatabase.execSQL("CREATE TRIGGER movie_search_delete AFTER DELETE ON " +
+                MovieEntry.TABLE_NAME + " BEGIN " +
+                "DELETE FROM " + SearchEntry.TABLE_NAME + " WHERE docid = old." + GeneralEntry._ID + "; END;");
+
+        // index the movies already stored
+        sqLiteDatabase.execSQL("INSERT INTO " + SearchEntry.TABLE_NAME + " (docid, " +
+                GeneralEntry.COLUMN_TITLE + ", " + GeneralEntry.COLUMN_SYNOPSIS + ") SELECT " +
+                GeneralEntry._ID + ", " + GeneralEntry.COLUMN_TITLE + ", " + GeneralEntry.COLUMN_SYNOPSIS +
+                " FROM " + MovieEntry.TABLE_NAME + ";");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over whenever the version
-        // number of the DB changes
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + MovieContract.MovieEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + MovieContract.MovieRatingEntry.TABLE_NAME);
-
-        // TODO: This is wrong since movie favorites should not be deleted on upgrade. Need to change it
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + MovieContract.MovieFavoriteEntry.TABLE_NAME);
+        // Upgrade step by step, so the movies and above all the favorites
+        // of the user are kept and the lists don't need to be synced again
+        for (int version = oldVersion; version < newVersion; version++) {
+            Migration migration = getMigration(version);
+            if (migration == null) {
+                // too old to be migrated, discard the data and start over
+                recreate(sqLiteDatabase);
+                return;
+            }
+            migration.migrate(sqLiteDatabase);
+        }
+    }
+
+    private static Migration getMigration(int startVersion) {
+        for (Migration migration : MIGRATIONS) {
+            if (migration.getStartVersion() == startVersion) {
+                return migration;
+            }
+        }
+        return null;
+    }
+
+    private void recreate(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + MovieEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LEGACY_RATING_TABLE);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LEGACY_FAVORITE_TABLE);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + MovieListEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + ReviewEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + TrailerEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + SearchEntry.TABLE_NAME);
 
         // create tables again
         onCreate(sqLiteDatabase);
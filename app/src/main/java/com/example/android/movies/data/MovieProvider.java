@@ -6,9 +6,30 @@ import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
-import android.util.Log;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.text.TextUtils;
+
+import com.example.android.movies.data.MovieContract.MovieEntry;
+import com.example.android.movies.data.MovieContract.MovieFavoriteEntry;
+import com.example.android.movies.data.MovieContract.MovieListEntry;
+import com.example.android.movies.data.MovieContract.MovieRatingEntry;
+import com.example.android.movies.data.MovieContract.ReviewEntry;
+import com.example.android.movies.data.MovieContract.SearchEntry;
+import com.example.android.movies.data.MovieContract.TrailerEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Extension of {@link ContentProvider} that implements
@@ -28,6 +49,123 @@ public class MovieProvider extends ContentProvider {
     private static final int MOVIE_RATING_WITH_ID = 400; // User rating movies with ID
     private static final int MOVIE_FAVORITE = 500; // Favorite movies
     private static final int MOVIE_FAVORITE_WITH_ID = 600; // Favorite movies with ID
+    private static final int REVIEW_WITH_MOVIE = 700; // Reviews of a movie
+    private static final int TRAILER_WITH_MOVIE = 800; // Trailers of a movie
+    private static final int SEARCH = 900; // Movies matching a text
+    private static final int SEARCH_WITH_ID = 1000; // Movie found by a search
+
+    // Number of search results returned when the uri has no limit
+    private static final String DEFAULT_SEARCH_LIMIT = "50";
+
+    // Columns written by the bulk upsert, in bind order
+    private static final String[] UPSERT_COLUMNS = MovieBatch.COLUMNS;
+
+    // The lists are served as the join of the movies and their membership
+    private static final String LIST_TABLES =
+            MovieEntry.TABLE_NAME + " INNER JOIN " + MovieListEntry.TABLE_NAME +
+            " ON " + MovieEntry.TABLE_NAME + "." + MovieEntry._ID +
+            " = " + MovieListEntry.TABLE_NAME + "." + MovieListEntry.COLUMN_MOVIE_ID;
+
+    // list = ?
+    private static final String LIST_SELECTION =
+            MovieListEntry.TABLE_NAME + "." + MovieListEntry.COLUMN_LIST + " = ?";
+
+    // Lists are served in rank order, which the (list, rank) index
+    // provides without a sort step
+    private static final String DEFAULT_LIST_SORT_ORDER =
+            MovieListEntry.TABLE_NAME + "." + MovieListEntry.COLUMN_RANK + " ASC";
+
+    // rank > ?, for keyset pagination
+    private static final String AFTER_RANK_SELECTION =
+            MovieListEntry.TABLE_NAME + "." + MovieListEntry.COLUMN_RANK + " > ?";
+
+    // list = ? AND movie_id = ?
+    private static final String LIST_WITH_ID_SELECTION =
+            LIST_SELECTION + " AND " +
+            MovieListEntry.TABLE_NAME + "." + MovieListEntry.COLUMN_MOVIE_ID + " = ?";
+
+    // Movies that don't belong to any list anymore
+    private static final String ORPHAN_MOVIE_SELECTION =
+            "NOT EXISTS (SELECT 1 FROM " + MovieListEntry.TABLE_NAME +
+            " WHERE " + MovieListEntry.COLUMN_MOVIE_ID + " = " +
+            MovieEntry.TABLE_NAME + "." + MovieEntry._ID + ")";
+
+    // Reviews and trailers of movies that aren't stored anymore
+    private static final String ORPHAN_REVIEW_SELECTION =
+            ReviewEntry.COLUMN_MOVIE_ID + " NOT IN (SELECT " + MovieEntry._ID +
+            " FROM " + MovieEntry.TABLE_NAME + ")";
+    private static final String ORPHAN_TRAILER_SELECTION =
+            TrailerEntry.COLUMN_MOVIE_ID + " NOT IN (SELECT " + MovieEntry._ID +
+            " FROM " + MovieEntry.TABLE_NAME + ")";
+
+    private static final String UPSERT_MEMBERSHIP_SQL =
+            "INSERT OR REPLACE INTO " + MovieListEntry.TABLE_NAME + " (" +
+            MovieListEntry.COLUMN_LIST + "," +
+            MovieListEntry.COLUMN_MOVIE_ID + "," +
+            MovieListEntry.COLUMN_RANK + ") VALUES (?,?,?)";
+
+    // Movies matching the search, with the tier of their best match:
+    // 0 for a match in the title, 1 for a match in the synopsis only.
+    // The first argument matches the title, the second any column.
+    private static final String SEARCH_TABLES =
+            MovieEntry.TABLE_NAME + " INNER JOIN (SELECT docid, MIN(tier) AS tier FROM (" +
+            "SELECT docid, 0 AS tier FROM " + SearchEntry.TABLE_NAME +
+            " WHERE " + GeneralEntry.COLUMN_TITLE + " MATCH ?" +
+            " UNION ALL " +
+            "SELECT docid, 1 AS tier FROM " + SearchEntry.TABLE_NAME +
+            " WHERE " + SearchEntry.TABLE_NAME + " MATCH ?" +
+            ") GROUP BY docid) AS matches ON " +
+            MovieEntry.TABLE_NAME + "." + MovieEntry._ID + " = matches.docid";
+
+    private static final String SEARCH_SORT_ORDER =
+            "matches.tier ASC, " + MovieEntry.TABLE_NAME + "." + GeneralEntry.COLUMN_POPULARITY + " DESC";
+
+    // Movie columns of the search results. They are not in a list,
+    // so they have no rank.
+    private static final Map<String, String> sSearchProjectionMap = buildSearchProjectionMap();
+
+    // Stored content of a movie, as read by StoredMovie
+    private static final String[] STORED_MOVIE_COLUMNS = concat(UPSERT_COLUMNS, MovieEntry.COLUMN_HASH);
+
+    // Stored content and rank in a list of movies, the ids are appended
+    private static final String STORED_MOVIE_SQL =
+            "SELECT " + TextUtils.join(",", qualify(MovieEntry.TABLE_NAME, UPSERT_COLUMNS)) + "," +
+            MovieEntry.TABLE_NAME + "." + MovieEntry.COLUMN_HASH + "," +
+            MovieListEntry.TABLE_NAME + "." + MovieListEntry.COLUMN_RANK +
+            " FROM " + MovieEntry.TABLE_NAME + " LEFT JOIN " + MovieListEntry.TABLE_NAME +
+            " ON " + MovieListEntry.TABLE_NAME + "." + MovieListEntry.COLUMN_MOVIE_ID +
+            " = " + MovieEntry.TABLE_NAME + "." + MovieEntry._ID +
+            " AND " + LIST_SELECTION +
+            " WHERE " + MovieEntry.TABLE_NAME + "." + MovieEntry._ID + " IN ";
+
+    // Ids bound per query, SQLite allows 999 arguments at most
+    private static final int MAX_BOUND_IDS = 500;
+
+    private static String[] concat(String[] columns, String column) {
+        String[] all = new String[columns.length + 1];
+        System.arraycopy(columns, 0, all, 0, columns.length);
+        all[columns.length] = column;
+        return all;
+    }
+
+    private static String[] qualify(String tableName, String[] columns) {
+        String[] qualified = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            qualified[i] = tableName + "." + columns[i];
+        }
+        return qualified;
+    }
+
+    private static Map<String, String> buildSearchProjectionMap() {
+        Map<String, String> map = new HashMap<>();
+        for (String column : UPSERT_COLUMNS) {
+            map.put(column, MovieEntry.TABLE_NAME + "." + column + " AS " + column);
+        }
+        map.put(MovieListEntry.COLUMN_RANK, "NULL AS " + MovieListEntry.COLUMN_RANK);
+        map.put(MovieEntry.COLUMN_DETAILS_FETCHED_AT, MovieEntry.TABLE_NAME + "." +
+                MovieEntry.COLUMN_DETAILS_FETCHED_AT + " AS " + MovieEntry.COLUMN_DETAILS_FETCHED_AT);
+        return map;
+    }
 
     private static UriMatcher buildUriMatcher(){
         // Build a UriMatcher by adding a specific code to return based on a match
@@ -35,16 +173,37 @@ public class MovieProvider extends ContentProvider {
         final String authority = MovieContract.CONTENT_AUTHORITY;
 
         // add a code for each type of URI you want
-        matcher.addURI(authority, MovieContract.MovieEntry.TABLE_NAME, MOVIE);
-        matcher.addURI(authority, MovieContract.MovieEntry.TABLE_NAME + "/#", MOVIE_WITH_ID);
-        matcher.addURI(authority, MovieContract.MovieRatingEntry.TABLE_NAME, MOVIE_RATING);
-        matcher.addURI(authority, MovieContract.MovieRatingEntry.TABLE_NAME + "/#", MOVIE_RATING_WITH_ID);
-        matcher.addURI(authority, MovieContract.MovieFavoriteEntry.TABLE_NAME, MOVIE_FAVORITE);
-        matcher.addURI(authority, MovieContract.MovieFavoriteEntry.TABLE_NAME + "/#", MOVIE_FAVORITE_WITH_ID);
+        matcher.addURI(authority, MovieContract.PATH_MOVIE, MOVIE);
+        matcher.addURI(authority, MovieContract.PATH_MOVIE + "/#", MOVIE_WITH_ID);
+        matcher.addURI(authority, MovieContract.PATH_MOVIE_RATING, MOVIE_RATING);
+        matcher.addURI(authority, MovieContract.PATH_MOVIE_RATING + "/#", MOVIE_RATING_WITH_ID);
+        matcher.addURI(authority, MovieContract.PATH_MOVIE_FAVORITE, MOVIE_FAVORITE);
+        matcher.addURI(authority, MovieContract.PATH_MOVIE_FAVORITE + "/#", MOVIE_FAVORITE_WITH_ID);
+        matcher.addURI(authority, MovieContract.PATH_REVIEW + "/#", REVIEW_WITH_MOVIE);
+        matcher.addURI(authority, MovieContract.PATH_TRAILER + "/#", TRAILER_WITH_MOVIE);
+        matcher.addURI(authority, MovieContract.PATH_SEARCH, SEARCH);
+        matcher.addURI(authority, MovieContract.PATH_SEARCH + "/#", SEARCH_WITH_ID);
 
         return matcher;
     }
 
+    // Name of the list in the movie_list table for a list uri code
+    private static String getListName(int match) {
+        switch (match) {
+            case MOVIE:
+            case MOVIE_WITH_ID:
+                return MovieEntry.LIST_NAME;
+            case MOVIE_RATING:
+            case MOVIE_RATING_WITH_ID:
+                return MovieRatingEntry.LIST_NAME;
+            case MOVIE_FAVORITE:
+            case MOVIE_FAVORITE_WITH_ID:
+                return MovieFavoriteEntry.LIST_NAME;
+            default:
+                return null;
+        }
+    }
+
     @Override
     public boolean onCreate() {
         mOpenHelper = new MovieDBHelper(getContext());
@@ -74,6 +233,18 @@ public class MovieProvider extends ContentProvider {
             case MOVIE_FAVORITE_WITH_ID: {
                 return MovieContract.MovieFavoriteEntry.CONTENT_ITEM_TYPE;
             }
+            case REVIEW_WITH_MOVIE: {
+                return ReviewEntry.CONTENT_TYPE;
+            }
+            case TRAILER_WITH_MOVIE: {
+                return TrailerEntry.CONTENT_TYPE;
+            }
+            case SEARCH: {
+                return SearchEntry.CONTENT_TYPE;
+            }
+            case SEARCH_WITH_ID: {
+                return SearchEntry.CONTENT_ITEM_TYPE;
+            }
             default: {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
             }
@@ -83,58 +254,82 @@ public class MovieProvider extends ContentProvider {
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
         Cursor retCursor;
-        switch(sUriMatcher.match(uri)){
-            // All Movies selected
-            case MOVIE: {
-                retCursor = query(MovieContract.MovieEntry.TABLE_NAME,
-                        projection,
-                        selection,
-                        selectionArgs,
-                        sortOrder);
+        final int match = sUriMatcher.match(uri);
+        switch(match){
+            // All Movies of a list selected
+            case MOVIE:
+            case MOVIE_RATING:
+            case MOVIE_FAVORITE: {
+                String listSelection = LIST_SELECTION;
+                String[] listArgs = new String[] {getListName(match)};
+
+                // keyset pagination
+                String afterRank = uri.getQueryParameter(MovieContract.QUERY_AFTER_RANK);
+                if (afterRank != null) {
+                    listSelection = DatabaseUtils.concatenateWhere(listSelection, AFTER_RANK_SELECTION);
+                    listArgs = new String[] {listArgs[0], afterRank};
+                }
+                // LIMIT offset,count, validated by the query builder
+                String limit = uri.getQueryParameter(MovieContract.QUERY_LIMIT);
+                String offset = uri.getQueryParameter(MovieContract.QUERY_OFFSET);
+                if (limit != null && offset != null) {
+                    limit = offset + "," + limit;
+                }
+
+                retCursor = queryList(projection,
+                        DatabaseUtils.concatenateWhere(listSelection, selection),
+                        DatabaseUtils.appendSelectionArgs(listArgs, selectionArgs),
+                        TextUtils.isEmpty(sortOrder) ? DEFAULT_LIST_SORT_ORDER : sortOrder,
+                        limit);
                 break;
             }
-            // Individual movie based on Id selected
-            case MOVIE_WITH_ID: {
-                retCursor = query(MovieContract.MovieEntry.TABLE_NAME,
-                        projection,
-                        GeneralEntry._ID + " = ?",
-                        new String[] {String.valueOf(ContentUris.parseId(uri))},
-                        sortOrder);
+            // Individual movie of a list based on Id selected
+            case MOVIE_WITH_ID:
+            case MOVIE_RATING_WITH_ID:
+            case MOVIE_FAVORITE_WITH_ID: {
+                retCursor = queryList(projection,
+                        LIST_WITH_ID_SELECTION,
+                        new String[] {getListName(match), String.valueOf(ContentUris.parseId(uri))},
+                        sortOrder,
+                        null);
                 break;
             }
-            // All Movies selected
-            case MOVIE_RATING: {
-                retCursor = query(MovieContract.MovieRatingEntry.TABLE_NAME,
+            // Reviews of a movie
+            case REVIEW_WITH_MOVIE: {
+                retCursor = query(ReviewEntry.TABLE_NAME,
                         projection,
-                        selection,
-                        selectionArgs,
+                        ReviewEntry.COLUMN_MOVIE_ID + " = ?",
+                        new String[] {String.valueOf(ContentUris.parseId(uri))},
                         sortOrder);
                 break;
             }
-            // Individual movie based on Id selected
-            case MOVIE_RATING_WITH_ID: {
-                retCursor = query(MovieContract.MovieRatingEntry.TABLE_NAME,
+            // Trailers of a movie
+            case TRAILER_WITH_MOVIE: {
+                retCursor = query(TrailerEntry.TABLE_NAME,
                         projection,
-                        GeneralEntry._ID + " = ?",
+                        TrailerEntry.COLUMN_MOVIE_ID + " = ?",
                         new String[] {String.valueOf(ContentUris.parseId(uri))},
                         sortOrder);
                 break;
             }
-            // All Movies selected
-            case MOVIE_FAVORITE: {
-                retCursor = query(MovieContract.MovieFavoriteEntry.TABLE_NAME,
-                        projection,
-                        selection,
-                        selectionArgs,
-                        sortOrder);
+            // Movies matching a text
+            case SEARCH: {
+                retCursor = querySearch(projection, selection, selectionArgs, sortOrder,
+                        uri.getQueryParameter(SearchEntry.QUERY_TEXT),
+                        uri.getQueryParameter(MovieContract.QUERY_LIMIT));
                 break;
             }
-            // Individual movie based on Id selected
-            case MOVIE_FAVORITE_WITH_ID: {
-                retCursor = query(MovieContract.MovieFavoriteEntry.TABLE_NAME,
+            // Movie found by a search
+            case SEARCH_WITH_ID: {
+                SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+                queryBuilder.setTables(MovieEntry.TABLE_NAME);
+                queryBuilder.setProjectionMap(sSearchProjectionMap);
+                retCursor = queryBuilder.query(mOpenHelper.getReadableDatabase(),
                         projection,
-                        GeneralEntry._ID + " = ?",
+                        MovieEntry.TABLE_NAME + "." + MovieEntry._ID + " = ?",
                         new String[] {String.valueOf(ContentUris.parseId(uri))},
+                        null,
+                        null,
                         sortOrder);
                 break;
             }
@@ -143,11 +338,53 @@ public class MovieProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
             }
         }
-        retCursor.setNotificationUri(getContext().getContentResolver(), uri);
-        getContext().getContentResolver().notifyChange(uri, null);
+        // Reads only register for changes, they never notify. Notifying
+        // here would make every loader watching the uri query again.
+        // Search results depend on every movie, so they watch all the uris.
+        retCursor.setNotificationUri(getContext().getContentResolver(),
+                match == SEARCH || match == SEARCH_WITH_ID ? MovieContract.BASE_CONTENT_URI : uri);
         return retCursor;
     }
 
+    private Cursor querySearch(String[] projection, String selection, String[] selectionArgs,
+                               String sortOrder, String text, String limit) {
+        String matchQuery = buildMatchQuery(text);
+        if (matchQuery == null) {
+            // nothing to search, an empty result with the requested columns
+            return new MatrixCursor(projection != null ? projection : MovieContract.MOVIE_COLUMNS);
+        }
+
+        SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+        queryBuilder.setTables(SEARCH_TABLES);
+        queryBuilder.setProjectionMap(sSearchProjectionMap);
+        // the match arguments come first, they are bound in the FROM clause
+        return queryBuilder.query(mOpenHelper.getReadableDatabase(),
+                projection,
+                selection,
+                DatabaseUtils.appendSelectionArgs(new String[] {matchQuery, matchQuery}, selectionArgs),
+                null,
+                null,
+                TextUtils.isEmpty(sortOrder) ? SEARCH_SORT_ORDER : sortOrder,
+                limit != null ? limit : DEFAULT_SEARCH_LIMIT);
+    }
+
+    // Turns the text typed by the user into an FTS query: every word
+    // becomes a prefix query, and all of them must match. Characters of
+    // the FTS syntax are dropped, so any text makes a valid query.
+    // Returns null if there is no word in the text.
+    static String buildMatchQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 0) {
+                query.append(query.length() == 0 ? "" : " ").append(word).append('*');
+            }
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+
     private Cursor query(String tableName, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
         return mOpenHelper.getReadableDatabase().query(
                 tableName,
@@ -159,20 +396,29 @@ public class MovieProvider extends ContentProvider {
                 sortOrder);
     }
 
+    private Cursor queryList(String[] projection, String selection, String[] selectionArgs,
+                             String sortOrder, String limit) {
+        SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+        queryBuilder.setTables(LIST_TABLES);
+        return queryBuilder.query(mOpenHelper.getReadableDatabase(),
+                projection,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                sortOrder,
+                limit);
+    }
+
     @Override
     public Uri insert(Uri uri, ContentValues values) {
         Uri returnUri;
-        switch (sUriMatcher.match(uri)) {
-            case MOVIE: {
-                returnUri = insert(MovieContract.MovieEntry.TABLE_NAME, uri, values);
-                break;
-            }
-            case MOVIE_RATING: {
-                returnUri = insert(MovieContract.MovieRatingEntry.TABLE_NAME, uri, values);
-                break;
-            }
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
+            case MOVIE:
+            case MOVIE_RATING:
             case MOVIE_FAVORITE: {
-                returnUri = insert(MovieContract.MovieFavoriteEntry.TABLE_NAME, uri, values);
+                returnUri = insertIntoList(getListName(match), uri, values);
                 break;
             }
             default: {
@@ -180,56 +426,84 @@ public class MovieProvider extends ContentProvider {
 
             }
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        // the item uri also reaches the observers of the whole list
+        notifyChange(returnUri);
         return returnUri;
     }
 
-    private Uri insert(String tableName, Uri uri, ContentValues values) {
+    // Stores the movie and appends it to the end of the list, unless a
+    // rank is given in the values. A movie already stored, e.g. from
+    // another list, only gets its changed columns updated, so the columns
+    // that are not in the values, like the details fetch time, are kept.
+    private Uri insertIntoList(String listName, Uri uri, ContentValues values) {
+        MovieBatch batch = new MovieBatch(1);
+        batch.add(values);
+
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        Uri returnUri;
-        long _id = db.insert(tableName, null, values);
-        // insert unless it is already contained in the database
-        if (_id > 0) {
-            returnUri = MovieContract.MovieEntry.buildMovieUri(_id);
-        } else {
-            throw new android.database.SQLException("Failed to insert row into: " + uri);
+        db.beginTransaction();
+        try {
+            StoredMovie movie = getStoredMovies(db, listName, new long[]{batch.getId(0)}).get(batch.getId(0));
+            SQLiteStatement upsert = db.compileStatement(buildUpsertSql(MovieEntry.TABLE_NAME));
+            SQLiteStatement membership = db.compileStatement(UPSERT_MEMBERSHIP_SQL);
+            try {
+                if (movie == null) {
+                    batch.bind(upsert, 0);
+                    if (upsert.executeInsert() == -1) {
+                        throw new android.database.SQLException("Failed to insert row into: " + uri);
+                    }
+                } else {
+                    updateChangedColumns(db, movie, batch, 0);
+                }
+
+                long rank = batch.getRank(0);
+                bindMembership(membership, listName, batch.getId(0),
+                        rank != MovieBatch.NO_RANK ? rank : getNextRank(db, listName));
+                if (membership.executeInsert() == -1) {
+                    throw new android.database.SQLException("Failed to insert row into: " + uri);
+                }
+            } finally {
+                upsert.close();
+                membership.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
-        return returnUri;
+        return ContentUris.withAppendedId(uri, batch.getId(0));
     }
 
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
         int numDeleted;
-        switch (sUriMatcher.match(uri)) {
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
             case MOVIE:
-                numDeleted = delete(MovieContract.MovieEntry.TABLE_NAME, selection, selectionArgs);
-                break;
-            case MOVIE_WITH_ID:
-                numDeleted = delete(MovieContract.MovieEntry.TABLE_NAME,
-                        GeneralEntry._ID + " = ?",
-                        new String[]{String.valueOf(ContentUris.parseId(uri))});
-                break;
             case MOVIE_RATING:
-                numDeleted = delete(MovieContract.MovieRatingEntry.TABLE_NAME, selection, selectionArgs);
+            case MOVIE_FAVORITE:
+                numDeleted = deleteFromList(getListName(match), selection, selectionArgs);
                 break;
+            case MOVIE_WITH_ID:
             case MOVIE_RATING_WITH_ID:
-                numDeleted = delete(MovieContract.MovieRatingEntry.TABLE_NAME,
+            case MOVIE_FAVORITE_WITH_ID:
+                numDeleted = deleteFromList(getListName(match),
                         GeneralEntry._ID + " = ?",
                         new String[]{String.valueOf(ContentUris.parseId(uri))});
                 break;
-            case MOVIE_FAVORITE:
-                numDeleted = delete(MovieContract.MovieFavoriteEntry.TABLE_NAME, selection, selectionArgs);
+            case REVIEW_WITH_MOVIE:
+                numDeleted = delete(ReviewEntry.TABLE_NAME,
+                        ReviewEntry.COLUMN_MOVIE_ID + " = ?",
+                        new String[]{String.valueOf(ContentUris.parseId(uri))});
                 break;
-            case MOVIE_FAVORITE_WITH_ID:
-                numDeleted = delete(MovieContract.MovieFavoriteEntry.TABLE_NAME,
-                        GeneralEntry._ID + " = ?",
+            case TRAILER_WITH_MOVIE:
+                numDeleted = delete(TrailerEntry.TABLE_NAME,
+                        TrailerEntry.COLUMN_MOVIE_ID + " = ?",
                         new String[]{String.valueOf(ContentUris.parseId(uri))});
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (numDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         return numDeleted;
     }
@@ -240,19 +514,45 @@ public class MovieProvider extends ContentProvider {
         return db.delete(tableName, selection, selectionArgs);
     }
 
+    // Removes the selected movies from a list. The selection applies to the
+    // movie columns. Movies that are left in no list are deleted as well.
+    private int deleteFromList(String listName, String selection, String[] selectionArgs) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+
+        int numDeleted;
+        try {
+            String movieSelection = selection == null ? "" :
+                    " AND " + MovieListEntry.COLUMN_MOVIE_ID + " IN (SELECT " + MovieEntry._ID +
+                    " FROM " + MovieEntry.TABLE_NAME + " WHERE " + selection + ")";
+            numDeleted = db.delete(MovieListEntry.TABLE_NAME,
+                    MovieListEntry.COLUMN_LIST + " = ?" + movieSelection,
+                    DatabaseUtils.appendSelectionArgs(new String[]{listName}, selectionArgs));
+            if (numDeleted > 0) {
+                deleteOrphans(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return numDeleted;
+    }
+
     @Override
     public int bulkInsert(Uri uri, ContentValues[] values){
         final int match = sUriMatcher.match(uri);
         int numInserted = 0;
         switch(match){
             case MOVIE:
-                numInserted = bulkInsert(MovieContract.MovieEntry.TABLE_NAME, uri, values);
-                break;
             case MOVIE_RATING:
-                numInserted = bulkInsert(MovieContract.MovieRatingEntry.TABLE_NAME, uri, values);
-                break;
             case MOVIE_FAVORITE:
-                numInserted = bulkInsert(MovieContract.MovieFavoriteEntry.TABLE_NAME, uri, values);
+                numInserted = bulkInsert(getListName(match), uri, values);
+                break;
+            case REVIEW_WITH_MOVIE:
+                numInserted = replaceForMovie(ReviewEntry.TABLE_NAME, ReviewEntry.COLUMN_MOVIE_ID, uri, values);
+                break;
+            case TRAILER_WITH_MOVIE:
+                numInserted = replaceForMovie(TrailerEntry.TABLE_NAME, TrailerEntry.COLUMN_MOVIE_ID, uri, values);
                 break;
             default:
                 return super.bulkInsert(uri, values);
@@ -260,40 +560,375 @@ public class MovieProvider extends ContentProvider {
         return numInserted;
     }
 
-    private int bulkInsert(String tableName, Uri uri, ContentValues[] values) {
+    // Writes the batch as a delta, so rows that didn't change are not rewritten
+    private int bulkInsert(String listName, Uri uri, ContentValues[] values) {
+        MovieBatch batch = new MovieBatch(values.length);
+        for (ContentValues value : values) {
+            if (value == null) {
+                throw new IllegalArgumentException("Cannot have null content values");
+            }
+            batch.add(value);
+        }
+        ListDelta delta = applyListDelta(listName, uri, batch);
+        return delta.unchanged + delta.updated + delta.inserted;
+    }
+
+    // Writes a batch of movies of a list, touching only what changed. Movies
+    // whose hash matches the stored one are skipped, changed movies only get
+    // their changed columns updated and new movies are inserted. The batch
+    // covers the range of ranks found in the batch, so movies that dropped
+    // out of that part of the list are removed from it. Observers are only
+    // notified if something was written.
+    private ListDelta applyListDelta(String listName, Uri uri, MovieBatch batch) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        // allows for multiple transactions
+        final ListDelta delta = new ListDelta();
+        delta.fetched = batch.size();
+
+        long[] ids = new long[batch.size()];
+        for (int row = 0; row < ids.length; row++) {
+            ids[row] = batch.getId(row);
+        }
+
+        boolean membershipChanged = false;
         db.beginTransaction();
+        try {
+            Map<Long, StoredMovie> stored = getStoredMovies(db, listName, ids);
 
-        // keep track of successful inserts
-        int numInserted = 0;
-        try{
-            for(ContentValues value : values) {
-                if (value == null) {
-                    throw new IllegalArgumentException("Cannot have null content values");
+            // A movie can move between pages while they are fetched and
+            // come twice in the batch, only its first row is written
+            Set<Long> incoming = new HashSet<>(ids.length);
+            boolean[] duplicate = new boolean[ids.length];
+            for (int row = 0; row < ids.length; row++) {
+                duplicate[row] = !incoming.add(ids[row]);
+            }
+
+            // memberships of the range that are not in the batch anymore
+            for (long id : getMoviesInRankRange(db, listName, batch)) {
+                if (!incoming.contains(id)) {
+                    delta.removed += db.delete(MovieListEntry.TABLE_NAME,
+                            MovieListEntry.COLUMN_LIST + " = ? AND " + MovieListEntry.COLUMN_MOVIE_ID + " = ?",
+                            new String[]{listName, String.valueOf(id)});
                 }
-                // check if entry already in table
-                int movieID = value.getAsInteger(GeneralEntry._ID);
-                Uri uriId = uri.buildUpon().appendPath(String.valueOf(movieID)).build();
-                Cursor temp = getContext().getContentResolver().query(uriId, null, null, null, null);
-                if (temp.getCount() > 0) {
-                    Log.d(LOG_TAG, "Movie " + value.getAsString(GeneralEntry.COLUMN_TITLE) +" already in DB");
-                    continue;
+            }
+
+            SQLiteStatement upsert = db.compileStatement(buildUpsertSql(MovieEntry.TABLE_NAME));
+            SQLiteStatement membership = db.compileStatement(UPSERT_MEMBERSHIP_SQL);
+            try {
+                long nextRank = getNextRank(db, listName);
+                for (int row = 0; row < ids.length; row++) {
+                    if (duplicate[row]) {
+                        continue;
+                    }
+                    StoredMovie movie = stored.get(ids[row]);
+
+                    if (movie == null) {
+                        batch.bind(upsert, row);
+                        if (upsert.executeInsert() != -1) {
+                            delta.inserted++;
+                        }
+                    } else if (updateChangedColumns(db, movie, batch, row)) {
+                        delta.updated++;
+                    } else {
+                        delta.unchanged++;
+                    }
+
+                    long rank = batch.getRank(row);
+                    long newRank = rank != MovieBatch.NO_RANK ? rank : nextRank++;
+                    if (movie == null || movie.rank == null || movie.rank != newRank) {
+                        bindMembership(membership, listName, ids[row], newRank);
+                        membership.executeInsert();
+                        membershipChanged = true;
+                    }
                 }
+            } finally {
+                upsert.close();
+                membership.close();
+            }
+
+            if (delta.removed > 0) {
+                deleteOrphans(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // a single notification for the whole batch, none if nothing changed
+        if (membershipChanged || delta.inserted + delta.updated + delta.removed > 0) {
+            notifyChange(uri);
+        }
+        return delta;
+    }
+
+    // Updates the changed columns of the movies of the list found in the
+    // batch, in a single transaction. The list itself is left as it is.
+    private ListDelta updateMovies(String listName, MovieBatch batch) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        final ListDelta delta = new ListDelta();
+        delta.fetched = batch.size();
+
+        long[] ids = new long[batch.size()];
+        for (int row = 0; row < ids.length; row++) {
+            ids[row] = batch.getId(row);
+        }
 
-                long _id = db.insert(tableName, null, value);
-                if (_id != -1){
-                    numInserted++;
+        db.beginTransaction();
+        try {
+            Map<Long, StoredMovie> stored = getStoredMovies(db, listName, ids);
+            for (int row = 0; row < ids.length; row++) {
+                StoredMovie movie = stored.get(ids[row]);
+                // only the movies of the list, which have a rank in it
+                if (movie == null || movie.rank == null) {
+                    continue;
+                }
+                if (updateChangedColumns(db, movie, batch, row)) {
+                    delta.updated++;
+                } else {
+                    delta.unchanged++;
                 }
             }
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+
+        // a movie can be in several lists, they all show the change
+        if (delta.updated > 0) {
+            notifyChange(MovieEntry.CONTENT_URI);
+            notifyChange(MovieRatingEntry.CONTENT_URI);
+            notifyChange(MovieFavoriteEntry.CONTENT_URI);
+        }
+        return delta;
+    }
+
+    // Replaces all the rows of a movie (e.g. its reviews) by the given
+    // values in a single transaction. The movie id is taken from the uri.
+    private int replaceForMovie(String tableName, String movieIdColumn, Uri uri, ContentValues[] values) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+
+        int numInserted;
+        try {
+            numInserted = replaceRows(db, tableName, movieIdColumn, ContentUris.parseId(uri), values);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyChange(uri);
+        return numInserted;
+    }
+
+    // Deletes the rows of the movie and inserts the values in their place,
+    // in the transaction of the caller. Returns the number of rows inserted.
+    private static int replaceRows(SQLiteDatabase db, String tableName, String movieIdColumn,
+                                   long movieId, ContentValues[] values) {
+        db.delete(tableName, movieIdColumn + " = ?", new String[]{String.valueOf(movieId)});
+        int numInserted = 0;
+        for (ContentValues value : values) {
+            if (value == null) {
+                throw new IllegalArgumentException("Cannot have null content values");
+            }
+            value.put(movieIdColumn, movieId);
+            if (db.insert(tableName, null, value) != -1) {
+                numInserted++;
+            }
+        }
         return numInserted;
     }
 
+    // Stores the details of a movie in a single transaction: the changed
+    // columns of the movie if it is stored, then its reviews and trailers
+    private void storeDetails(long movieId, Bundle extras) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        ContentValues movieValues = extras.getParcelable(MovieContract.EXTRA_MOVIE);
+        ContentValues[] reviews = toContentValues(extras.getParcelableArray(MovieContract.EXTRA_REVIEWS));
+        ContentValues[] trailers = toContentValues(extras.getParcelableArray(MovieContract.EXTRA_TRAILERS));
+
+        boolean movieChanged = false;
+        db.beginTransaction();
+        try {
+            if (movieValues != null) {
+                MovieBatch movie = new MovieBatch(1);
+                movie.add(movieValues);
+                Cursor cursor = db.query(MovieEntry.TABLE_NAME, STORED_MOVIE_COLUMNS,
+                        GeneralEntry._ID + " = ?", new String[]{String.valueOf(movieId)},
+                        null, null, null);
+                try {
+                    if (cursor.moveToFirst()) {
+                        movieChanged = updateChangedColumns(db, new StoredMovie(cursor), movie, 0);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            if (reviews != null) {
+                replaceRows(db, ReviewEntry.TABLE_NAME, ReviewEntry.COLUMN_MOVIE_ID, movieId, reviews);
+            }
+            if (trailers != null) {
+                replaceRows(db, TrailerEntry.TABLE_NAME, TrailerEntry.COLUMN_MOVIE_ID, movieId, trailers);
+            }
+            // only read to decide when to fetch the details again, so
+            // the observers are not notified of this change alone
+            ContentValues fetched = new ContentValues();
+            fetched.put(MovieEntry.COLUMN_DETAILS_FETCHED_AT,
+                    extras.getLong(MovieContract.EXTRA_FETCHED_AT, System.currentTimeMillis()));
+            db.update(MovieEntry.TABLE_NAME, fetched, GeneralEntry._ID + " = ?",
+                    new String[]{String.valueOf(movieId)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // the item uris reach both the detail screen and the lists
+        if (movieChanged) {
+            notifyChange(MovieEntry.buildMovieUri(movieId));
+            notifyChange(MovieRatingEntry.buildMovieUri(movieId));
+            notifyChange(MovieFavoriteEntry.buildMovieUri(movieId));
+        }
+        if (reviews != null) {
+            notifyChange(ReviewEntry.buildMovieReviewsUri(movieId));
+        }
+        if (trailers != null) {
+            notifyChange(TrailerEntry.buildMovieTrailersUri(movieId));
+        }
+    }
+
+    // Deletes the movies left in no list, with their reviews and trailers.
+    // Runs in the transaction that removed the movies from their lists.
+    private static void deleteOrphans(SQLiteDatabase db) {
+        if (db.delete(MovieEntry.TABLE_NAME, ORPHAN_MOVIE_SELECTION, null) > 0) {
+            db.delete(ReviewEntry.TABLE_NAME, ORPHAN_REVIEW_SELECTION, null);
+            db.delete(TrailerEntry.TABLE_NAME, ORPHAN_TRAILER_SELECTION, null);
+        }
+    }
+
+    private static ContentValues[] toContentValues(Parcelable[] parcels) {
+        if (parcels == null) {
+            return null;
+        }
+        ContentValues[] values = new ContentValues[parcels.length];
+        for (int i = 0; i < parcels.length; i++) {
+            values[i] = (ContentValues) parcels[i];
+        }
+        return values;
+    }
+
+    // Notifies the observers of uri, its ancestors and descendants once a
+    // write has been committed. Callers notify once per transaction, with
+    // the narrowest uri that covers the rows they changed. Local changes
+    // don't need to be synced back, so no sync to network is requested.
+    private void notifyChange(Uri uri) {
+        getContext().getContentResolver().notifyChange(uri, null, false);
+    }
+
+    // Movies of the list between the lowest and highest rank found in the batch, if any
+    private static List<Long> getMoviesInRankRange(SQLiteDatabase db, String listName,
+                                                   MovieBatch batch) {
+        List<Long> ids = new ArrayList<>();
+        long minRank = Long.MAX_VALUE;
+        long maxRank = Long.MIN_VALUE;
+        for (int row = 0; row < batch.size(); row++) {
+            long rank = batch.getRank(row);
+            if (rank != MovieBatch.NO_RANK) {
+                minRank = Math.min(minRank, rank);
+                maxRank = Math.max(maxRank, rank);
+            }
+        }
+        if (minRank > maxRank) {
+            return ids;
+        }
+
+        Cursor cursor = db.query(MovieListEntry.TABLE_NAME,
+                new String[]{MovieListEntry.COLUMN_MOVIE_ID},
+                MovieListEntry.COLUMN_LIST + " = ? AND " +
+                MovieListEntry.COLUMN_RANK + " BETWEEN ? AND ?",
+                new String[]{listName, String.valueOf(minRank), String.valueOf(maxRank)},
+                null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    // Loads the stored content, hash and rank in the list of the given
+    // movies, in chunks that stay below the SQLite limit of bound arguments
+    private static Map<Long, StoredMovie> getStoredMovies(SQLiteDatabase db, String listName, long[] ids) {
+        Map<Long, StoredMovie> movies = new HashMap<>(ids.length);
+        for (int start = 0; start < ids.length; start += MAX_BOUND_IDS) {
+            int count = Math.min(MAX_BOUND_IDS, ids.length - start);
+            String[] args = new String[count + 1];
+            args[0] = listName;
+            StringBuilder in = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                in.append(i == 0 ? "?" : ",?");
+                args[i + 1] = String.valueOf(ids[start + i]);
+            }
+
+            Cursor cursor = db.rawQuery(STORED_MOVIE_SQL + "(" + in + ")", args);
+            try {
+                while (cursor.moveToNext()) {
+                    StoredMovie movie = new StoredMovie(cursor);
+                    movies.put(movie.id, movie);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return movies;
+    }
+
+    // Updates the columns of the stored movie that differ from the row of
+    // the batch. Returns whether the content changed, a stale or missing
+    // hash alone is fixed without counting as a change.
+    private static boolean updateChangedColumns(SQLiteDatabase db, StoredMovie movie,
+                                                MovieBatch batch, int row) {
+        long hash = batch.computeHash(row);
+        if (movie.hash != null && movie.hash == hash) {
+            return false;
+        }
+
+        ContentValues changed = movie.diff(batch, row);
+        boolean contentChanged = changed.size() > 0;
+        changed.put(MovieEntry.COLUMN_HASH, hash);
+        db.update(MovieEntry.TABLE_NAME, changed,
+                GeneralEntry._ID + " = ?", new String[]{String.valueOf(movie.id)});
+        return contentChanged;
+    }
+
+    // Rank right after the last movie of the list
+    private static long getNextRank(SQLiteDatabase db, String listName) {
+        return DatabaseUtils.longForQuery(db,
+                "SELECT IFNULL(MAX(" + MovieListEntry.COLUMN_RANK + ") + 1, 0) FROM " +
+                MovieListEntry.TABLE_NAME + " WHERE " + MovieListEntry.COLUMN_LIST + " = ?",
+                new String[]{listName});
+    }
+
+    private static String buildUpsertSql(String tableName) {
+        StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ")
+                .append(tableName)
+                .append(" (");
+        for (int i = 0; i < UPSERT_COLUMNS.length; i++) {
+            sql.append(i == 0 ? "" : ",").append(UPSERT_COLUMNS[i]);
+        }
+        sql.append(",").append(MovieEntry.COLUMN_HASH).append(") VALUES (");
+        for (int i = 0; i < UPSERT_COLUMNS.length; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(",?)").toString();
+    }
+
+    // Binds the list membership of a movie
+    private static void bindMembership(SQLiteStatement statement, String listName,
+                                       long movieId, long rank) {
+        statement.bindString(1, listName);
+        statement.bindLong(2, movieId);
+        statement.bindLong(3, rank);
+    }
+
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection, String[] selectionArgs) {
         int numUpdated = 0;
@@ -302,44 +937,21 @@ public class MovieProvider extends ContentProvider {
             throw new IllegalArgumentException("Cannot have null content values");
         }
 
-        switch(sUriMatcher.match(uri)){
-            case MOVIE: {
-                numUpdated = update(MovieContract.MovieEntry.TABLE_NAME,
-                        contentValues,
-                        selection,
-                        selectionArgs);
-                break;
-            }
-            case MOVIE_WITH_ID: {
-                numUpdated = update(MovieContract.MovieEntry.TABLE_NAME,
-                        contentValues,
-                        GeneralEntry._ID + " = ?",
-                        new String[] {String.valueOf(ContentUris.parseId(uri))});
-                break;
-            }
-            case MOVIE_RATING: {
-                numUpdated = update(MovieContract.MovieRatingEntry.TABLE_NAME,
-                        contentValues,
-                        selection,
-                        selectionArgs);
-                break;
-            }
-            case MOVIE_RATING_WITH_ID: {
-                numUpdated = update(MovieContract.MovieRatingEntry.TABLE_NAME,
-                        contentValues,
-                        GeneralEntry._ID + " = ?",
-                        new String[]{String.valueOf(ContentUris.parseId(uri))});
-                break;
-            }
+        final int match = sUriMatcher.match(uri);
+        switch(match){
+            case MOVIE:
+            case MOVIE_RATING:
             case MOVIE_FAVORITE: {
-                numUpdated = update(MovieContract.MovieFavoriteEntry.TABLE_NAME,
+                numUpdated = updateList(getListName(match),
                         contentValues,
                         selection,
                         selectionArgs);
                 break;
             }
+            case MOVIE_WITH_ID:
+            case MOVIE_RATING_WITH_ID:
             case MOVIE_FAVORITE_WITH_ID: {
-                numUpdated = update(MovieContract.MovieFavoriteEntry.TABLE_NAME,
+                numUpdated = updateList(getListName(match),
                         contentValues,
                         GeneralEntry._ID + " = ?",
                         new String[] {String.valueOf(ContentUris.parseId(uri))});
@@ -351,18 +963,74 @@ public class MovieProvider extends ContentProvider {
         }
 
         if (numUpdated > 0){
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         return numUpdated;
     }
 
-    private int update(String tableName, ContentValues contentValues, String selection, String[] selectionArgs) {
+    // Updates the selected movies of a list. The selection applies to the movie columns.
+    private int updateList(String listName, ContentValues contentValues, String selection, String[] selectionArgs) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        return db.update(tableName,
+        String inList = GeneralEntry._ID + " IN (SELECT " + MovieListEntry.COLUMN_MOVIE_ID +
+                " FROM " + MovieListEntry.TABLE_NAME + " WHERE " + MovieListEntry.COLUMN_LIST + " = ?)";
+        return db.update(MovieEntry.TABLE_NAME,
                 contentValues,
-                selection,
-                selectionArgs);
+                DatabaseUtils.concatenateWhere(inList, selection),
+                DatabaseUtils.appendSelectionArgs(new String[]{listName}, selectionArgs));
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        switch (method) {
+            case MovieContract.METHOD_SYNC_LIST: {
+                Uri uri = Uri.parse(arg);
+                String listName = getListName(sUriMatcher.match(uri));
+                if (listName == null || extras == null) {
+                    throw new IllegalArgumentException("Cannot sync list: " + arg);
+                }
+                MovieBatch batch = MovieBatch.readFrom(extras);
+                if (batch == null) {
+                    throw new IllegalArgumentException("No movies to sync: " + arg);
+                }
+                return applyListDelta(listName, uri, batch).toBundle();
+            }
+            case MovieContract.METHOD_COUNT_LIST: {
+                String listName = getListName(sUriMatcher.match(Uri.parse(arg)));
+                if (listName == null) {
+                    throw new IllegalArgumentException("Cannot count list: " + arg);
+                }
+                // the rank index holds the list, so the table itself isn't read
+                Bundle count = new Bundle();
+                count.putInt(MovieContract.EXTRA_COUNT, (int) DatabaseUtils.queryNumEntries(
+                        mOpenHelper.getReadableDatabase(),
+                        MovieListEntry.TABLE_NAME,
+                        MovieListEntry.COLUMN_LIST + " = ?",
+                        new String[] {listName}));
+                return count;
+            }
+            case MovieContract.METHOD_UPDATE_MOVIES: {
+                Uri uri = Uri.parse(arg);
+                String listName = getListName(sUriMatcher.match(uri));
+                MovieBatch batch = MovieBatch.readFrom(extras);
+                if (listName == null || batch == null) {
+                    throw new IllegalArgumentException("Cannot update movies of: " + arg);
+                }
+                return updateMovies(listName, batch).toBundle();
+            }
+            case MovieContract.METHOD_STORE_DETAILS: {
+                if (extras == null) {
+                    throw new IllegalArgumentException("No details to store: " + arg);
+                }
+                storeDetails(Long.parseLong(arg), extras);
+                return null;
+            }
+            case MovieContract.METHOD_CHECKPOINT:
+                mOpenHelper.checkpoint(arg != null ? arg : MovieContract.CHECKPOINT_PASSIVE);
+                return null;
+            default:
+                return super.call(method, arg, extras);
+        }
     }
 
     // From Sunshine App:
@@ -375,4 +1043,84 @@ public class MovieProvider extends ContentProvider {
         mOpenHelper.close();
         super.shutdown();
     }
+
+    // Statistics of a list write
+    private static class ListDelta {
+        int fetched;
+        int unchanged;
+        int updated;
+        int inserted;
+        int removed;
+
+        Bundle toBundle() {
+            Bundle bundle = new Bundle();
+            bundle.putInt(MovieContract.STAT_FETCHED, fetched);
+            bundle.putInt(MovieContract.STAT_UNCHANGED, unchanged);
+            bundle.putInt(MovieContract.STAT_UPDATED, updated);
+            bundle.putInt(MovieContract.STAT_INSERTED, inserted);
+            bundle.putInt(MovieContract.STAT_REMOVED, removed);
+            return bundle;
+        }
+    }
+
+    // Row read by STORED_MOVIE_SQL: the UPSERT_COLUMNS, the hash and the
+    // rank, or by STORED_MOVIE_COLUMNS, without a rank. Missing numbers
+    // are NaN, as in a MovieBatch.
+    private static class StoredMovie {
+        final long id;
+        final String title;
+        final String releaseDate;
+        final double rating;
+        final double popularity;
+        final String synopsis;
+        final String poster;
+        final String thumb;
+        final Long hash;
+        final Long rank;
+
+        StoredMovie(Cursor cursor) {
+            id = cursor.getLong(0);
+            title = cursor.getString(1);
+            releaseDate = cursor.getString(2);
+            rating = cursor.isNull(3) ? Double.NaN : cursor.getDouble(3);
+            popularity = cursor.isNull(4) ? Double.NaN : cursor.getDouble(4);
+            synopsis = cursor.getString(5);
+            poster = cursor.getString(6);
+            thumb = cursor.getString(7);
+            int hashIndex = UPSERT_COLUMNS.length;
+            hash = cursor.isNull(hashIndex) ? null : cursor.getLong(hashIndex);
+            rank = cursor.getColumnCount() <= hashIndex + 1 || cursor.isNull(hashIndex + 1)
+                    ? null : cursor.getLong(hashIndex + 1);
+        }
+
+        // The content columns of the row of the batch that differ from the stored ones
+        ContentValues diff(MovieBatch batch, int row) {
+            ContentValues changed = new ContentValues();
+            putIfChanged(changed, GeneralEntry.COLUMN_TITLE, title, batch.getTitle(row));
+            putIfChanged(changed, GeneralEntry.COLUMN_RELEASE_DATE, releaseDate, batch.getReleaseDate(row));
+            putIfChanged(changed, GeneralEntry.COLUMN_RATING, rating, batch.getRating(row));
+            putIfChanged(changed, GeneralEntry.COLUMN_POPULARITY, popularity, batch.getPopularity(row));
+            putIfChanged(changed, GeneralEntry.COLUMN_SYNOPSIS, synopsis, batch.getSynopsis(row));
+            putIfChanged(changed, GeneralEntry.COLUMN_POSTER, poster, batch.getPoster(row));
+            putIfChanged(changed, GeneralEntry.COLUMN_THUMB, thumb, batch.getThumb(row));
+            return changed;
+        }
+
+        private static void putIfChanged(ContentValues changed, String column, String stored, String value) {
+            if (stored == null ? value != null : !stored.equals(value)) {
+                changed.put(column, value);
+            }
+        }
+
+        private static void putIfChanged(ContentValues changed, String column, double stored, double value) {
+            // NaN, missing, only equals itself here
+            if (Double.compare(stored, value) != 0) {
+                if (Double.isNaN(value)) {
+                    changed.putNull(column);
+                } else {
+                    changed.put(column, value);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,86 @@
+package com.example.android.movies.data;
+
+import android.database.Cursor;
+
+/**
+ * Flyweight reader of the movie rows of a cursor queried with the
+ * {@link MovieContract#MOVIE_COLUMNS}. The reader holds no row data: it
+ * reads the columns of the current row of the cursor on demand, as
+ * primitives where they are numbers. A single reader can go over any
+ * number of rows, and of cursors with {@link #setCursor(Cursor)},
+ * without boxing or allocating a model per row.
+ *
+ * @author Ali K Thabet
+ */
+public class MovieRowReader {
+    private Cursor mCursor;
+
+    public MovieRowReader(Cursor cursor) {
+        mCursor = cursor;
+    }
+
+    /**
+     * Reads another cursor, which is left open like the previous one.
+     */
+    public void setCursor(Cursor cursor) {
+        mCursor = cursor;
+    }
+
+    public int getCount() {
+        return mCursor.getCount();
+    }
+
+    public boolean moveToPosition(int position) {
+        return mCursor.moveToPosition(position);
+    }
+
+    public boolean moveToNext() {
+        return mCursor.moveToNext();
+    }
+
+    public long getId() {
+        return mCursor.getLong(MovieContract.COL_MOVIE_ID);
+    }
+
+    public String getTitle() {
+        return mCursor.getString(MovieContract.COL_MOVIE_TITLE);
+    }
+
+    public String getReleaseDate() {
+        return mCursor.getString(MovieContract.COL_MOVIE_RELEASE_DATE);
+    }
+
+    public String getSynopsis() {
+        return mCursor.getString(MovieContract.COL_MOVIE_SYNOPSIS);
+    }
+
+    /**
+     * @return the rating, 0 if unknown
+     */
+    public double getRating() {
+        return mCursor.getDouble(MovieContract.COL_MOVIE_RATING);
+    }
+
+    /**
+     * @return the popularity, 0 if unknown
+     */
+    public double getPopularity() {
+        return mCursor.getDouble(MovieContract.COL_MOVIE_POPULARITY);
+    }
+
+    public String getPoster() {
+        return mCursor.getString(MovieContract.COL_MOVIE_POSTER);
+    }
+
+    public String getThumb() {
+        return mCursor.getString(MovieContract.COL_MOVIE_THUMB);
+    }
+
+    /**
+     * @return the rank in the list, or {@link MovieBatch#NO_RANK} if the row is not in one
+     */
+    public long getRank() {
+        return mCursor.isNull(MovieContract.COL_MOVIE_RANK)
+                ? MovieBatch.NO_RANK : mCursor.getLong(MovieContract.COL_MOVIE_RANK);
+    }
+}
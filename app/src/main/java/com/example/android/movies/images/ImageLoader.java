@@ -0,0 +1,150 @@
+package com.example.android.movies.images;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.view.ViewTreeObserver;
+import android.widget.ImageView;
+
+import com.example.android.movies.R;
+import com.example.android.movies.api.MovieDBClient;
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.OkHttpDownloader;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide loader of the poster images. Posters are given by their
+ * stored TMDB path, downloaded in the size that fits the view, decoded
+ * straight to the view size in RGB_565, which halves their memory since
+ * posters are opaque, and kept in a memory cache bounded to a fraction
+ * of the app heap. The downloads go through their own on-disk cache,
+ * but share the connection pool of the {@link MovieDBClient}.
+ * <p>
+ * Image requests don't count against the API quota, so they don't go
+ * through the client of the API and its rate limiter.
+ *
+ * @author Ali K Thabet
+ */
+public class ImageLoader {
+    // Share of the app heap given to the memory cache
+    private static final int MEMORY_CACHE_DIVIDER = 8;
+
+    // Size bound of the on-disk image cache
+    private static final long DISK_CACHE_SIZE = 50 * 1024 * 1024; // 50 MiB
+    private static final String DISK_CACHE_DIR = "images";
+
+    private static final int TIMEOUT_SECONDS = 15;
+
+    // Height of a poster relative to its width
+    private static final float POSTER_ASPECT = 1.5f;
+
+    private static ImageLoader sInstance;
+
+    private final Picasso mPicasso;
+    private final PosterUrl mPosterUrl;
+
+    private ImageLoader(Context context) {
+        OkHttpClient httpClient = new OkHttpClient();
+        httpClient.setConnectionPool(MovieDBClient.getInstance(context).getHttpClient().getConnectionPool());
+        httpClient.setCache(new Cache(new File(context.getCacheDir(), DISK_CACHE_DIR), DISK_CACHE_SIZE));
+        httpClient.setConnectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        httpClient.setReadTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryCacheSize = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CACHE_DIVIDER;
+
+        mPicasso = new Picasso.Builder(context)
+                .downloader(new OkHttpDownloader(httpClient))
+                .memoryCache(new LruCache(memoryCacheSize))
+                .defaultBitmapConfig(Bitmap.Config.RGB_565)
+                .build();
+        mPosterUrl = new PosterUrl(context.getString(R.string.image_base_url));
+    }
+
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ImageLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the height of a poster shown with the width
+     */
+    public static int getPosterHeight(int widthPx) {
+        return Math.round(widthPx * POSTER_ASPECT);
+    }
+
+    /**
+     * Request of a poster decoded to the width. Requests built for the
+     * same poster and width share the same memory cache entry.
+     *
+     * @param poster relative path of the poster, or a full URL. If it is
+     *               null the request loads nothing, and only sets the
+     *               placeholder of the view.
+     * @param tag tag of the request, to pause and resume it, or null
+     */
+    public RequestCreator loadPoster(String poster, int widthPx, Object tag) {
+        RequestCreator request = mPicasso.load(mPosterUrl.build(poster, widthPx))
+                .resize(widthPx, getPosterHeight(widthPx))
+                .centerCrop();
+        if (tag != null) {
+            request.tag(tag);
+        }
+        return request;
+    }
+
+    /**
+     * Loads a poster into a view, decoded to the width of the view. If the
+     * view isn't laid out yet, the load waits for its width.
+     */
+    public void loadPosterInto(final String poster, final ImageView view) {
+        if (view.getWidth() > 0) {
+            loadPoster(poster, view.getWidth(), null).into(view);
+            return;
+        }
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                ViewTreeObserver observer = view.getViewTreeObserver();
+                if (view.getWidth() <= 0) {
+                    return true;
+                }
+                if (observer.isAlive()) {
+                    observer.removeOnPreDrawListener(this);
+                }
+                loadPoster(poster, view.getWidth(), null).into(view);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Downloads and decodes a poster into the memory cache, at a low
+     * priority, so it shows at once when its view is bound.
+     */
+    public void prefetchPoster(String poster, int widthPx, Object tag) {
+        loadPoster(poster, widthPx, tag).priority(Picasso.Priority.LOW).fetch();
+    }
+
+    /**
+     * Cancels the load of a view, e.g. when it is bound to a placeholder.
+     */
+    public void cancel(ImageView view) {
+        mPicasso.cancelRequest(view);
+    }
+
+    public void pause(Object tag) {
+        mPicasso.pauseTag(tag);
+    }
+
+    public void resume(Object tag) {
+        mPicasso.resumeTag(tag);
+    }
+}
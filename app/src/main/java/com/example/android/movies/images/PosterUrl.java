@@ -0,0 +1,86 @@
+package com.example.android.movies.images;
+
+/**
+ * Builds the URLs of the TMDB poster images. The database only keeps the
+ * relative path of a poster, and its URL is {@code <base><size><path>},
+ * where the size is picked from the fixed set of widths served by the
+ * API. The smallest width covering the view is used, so a small grid
+ * cell never decodes a large poster, and each device gets the resolution
+ * it shows without touching the stored data.
+ *
+ * @author Ali K Thabet
+ */
+public class PosterUrl {
+    // Path segment preceding the size in the TMDB image URLs
+    private static final String SIZE_SEGMENT = "/t/p/";
+
+    // Poster widths served by the API, in pixels, and their size names
+    private static final int[] WIDTHS = {92, 154, 185, 342, 500, 780};
+    private static final String[] SIZES = {"w92", "w154", "w185", "w342", "w500", "w780", "original"};
+
+    // Base URL followed by each of the SIZES
+    private final String[] mPrefixes = new String[SIZES.length];
+
+    /**
+     * @param baseUrl URL preceding the size, e.g. {@code http://image.tmdb.org/t/p/}
+     */
+    public PosterUrl(String baseUrl) {
+        for (int i = 0; i < SIZES.length; i++) {
+            mPrefixes[i] = baseUrl + SIZES[i];
+        }
+    }
+
+    // Index in SIZES of the smallest poster at least as wide as the
+    // width, or of the original image if none is
+    private static int getSizeIndex(int widthPx) {
+        for (int i = 0; i < WIDTHS.length; i++) {
+            if (WIDTHS[i] >= widthPx) {
+                return i;
+            }
+        }
+        return WIDTHS.length;
+    }
+
+    /**
+     * @return the size name of the smallest poster at least as wide as
+     * the width, or the original image if none is
+     */
+    public static String getSize(int widthPx) {
+        return SIZES[getSizeIndex(widthPx)];
+    }
+
+    /**
+     * URL of a poster in the size fitting the width.
+     *
+     * @param poster relative path of the poster, as stored, or a full URL
+     * @return the URL, or null if the poster is null, as the movies of the
+     * details and favorites may store it
+     */
+    public String build(String poster, int widthPx) {
+        if (poster == null) {
+            return null;
+        }
+        if (!poster.startsWith("/")) {
+            // already a URL, e.g. the placeholder of a missing poster
+            return forWidth(poster, widthPx);
+        }
+        return mPrefixes[getSizeIndex(widthPx)] + poster;
+    }
+
+    /**
+     * Replaces the size of a TMDB image URL by the one fitting the width.
+     * URLs of other hosts are returned unchanged.
+     */
+    public static String forWidth(String url, int widthPx) {
+        int start = url.indexOf(SIZE_SEGMENT);
+        if (start < 0) {
+            return url;
+        }
+        start += SIZE_SEGMENT.length();
+        int end = url.indexOf('/', start);
+        if (end < 0) {
+            return url;
+        }
+        return url.substring(0, start) + getSize(widthPx) + url.substring(end);
+    }
+}
@@ -31,6 +31,9 @@ public class MovieItem implements Parcelable {
     public static final String MDB_RATING      = "vote_average";
     public static final String MDB_POPULARITY  = "popularity";
 
+    // Synopsis of the movies that come without one
+    public static final String NO_SYNOPSIS = "No synopsis available";
+
     @SerializedName(MDB_ID)
     private Integer id;         // unique ID for movie
     @SerializedName(MDB_TITLE)
@@ -80,7 +83,7 @@ public class MovieItem implements Parcelable {
     }
 
     public void setSynopsis(String synopsis) {
-        if (synopsis.equals("null")) this.synopsis = "No synopsis available";
+        if (synopsis.equals("null")) this.synopsis = NO_SYNOPSIS;
         else                  this.synopsis = synopsis;
     }
 
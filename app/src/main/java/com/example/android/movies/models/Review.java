@@ -1,8 +1,12 @@
 package com.example.android.movies.models;
 
+import android.content.ContentValues;
+import android.database.Cursor;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.example.android.movies.data.MovieContract;
+
 /**
  * Class <tt>Review</tt> stores reviews obtained
  * from the MovieDB API for a specific movie.
@@ -20,6 +24,12 @@ public class Review implements Parcelable {
         this.content = content;
     }
 
+    public Review(Cursor cursor) {
+        this.id      = cursor.getString(MovieContract.COL_REVIEW_ID);
+        this.author  = cursor.getString(MovieContract.COL_REVIEW_AUTHOR);
+        this.content = cursor.getString(MovieContract.COL_REVIEW_CONTENT);
+    }
+
     public Review(Parcel in) {
         this.id = in.readString();
         this.author = in.readString();
@@ -50,6 +60,21 @@ public class Review implements Parcelable {
         this.content = content;
     }
 
+    /**
+     * @param fetchedAt time in millis at which the review was downloaded
+     * @return the values to store the review, the movie id is set by the provider
+     */
+    public ContentValues getContentValues(long fetchedAt) {
+        ContentValues reviewValues = new ContentValues();
+
+        reviewValues.put(MovieContract.ReviewEntry.COLUMN_REVIEW_ID,  this.getId());
+        reviewValues.put(MovieContract.ReviewEntry.COLUMN_AUTHOR,     this.getAuthor());
+        reviewValues.put(MovieContract.ReviewEntry.COLUMN_CONTENT,    this.getContent());
+        reviewValues.put(MovieContract.ReviewEntry.COLUMN_FETCHED_AT, fetchedAt);
+
+        return reviewValues;
+    }
+
     public static final Creator<Review> CREATOR = new Creator<Review>() {
         @Override
         public Review createFromParcel(Parcel parcel) {
@@ -1,8 +1,12 @@
 package com.example.android.movies.models;
 
+import android.content.ContentValues;
+import android.database.Cursor;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.example.android.movies.data.MovieContract;
+
 /**
  * Class <tt>Review</tt> stores trailers obtained
  * from the MovieDB API for a specific movie.
@@ -28,6 +32,14 @@ public class Trailer implements Parcelable {
         this.type = type;
     }
 
+    public Trailer(Cursor cursor) {
+        this.id   = cursor.getString(MovieContract.COL_TRAILER_ID);
+        this.key  = cursor.getString(MovieContract.COL_TRAILER_KEY);
+        this.name = cursor.getString(MovieContract.COL_TRAILER_NAME);
+        this.site = cursor.getString(MovieContract.COL_TRAILER_SITE);
+        this.type = cursor.getString(MovieContract.COL_TRAILER_TYPE);
+    }
+
     public Trailer(Parcel in) {
         this.id = in.readString();
         this.iso_639_1 = in.readString();
@@ -94,6 +106,23 @@ public class Trailer implements Parcelable {
         this.type = type;
     }
 
+    /**
+     * @param fetchedAt time in millis at which the trailer was downloaded
+     * @return the values to store the trailer, the movie id is set by the provider
+     */
+    public ContentValues getContentValues(long fetchedAt) {
+        ContentValues trailerValues = new ContentValues();
+
+        trailerValues.put(MovieContract.TrailerEntry.COLUMN_TRAILER_ID, this.getId());
+        trailerValues.put(MovieContract.TrailerEntry.COLUMN_KEY,        this.getKey());
+        trailerValues.put(MovieContract.TrailerEntry.COLUMN_NAME,       this.getName());
+        trailerValues.put(MovieContract.TrailerEntry.COLUMN_SITE,       this.getSite());
+        trailerValues.put(MovieContract.TrailerEntry.COLUMN_TYPE,       this.getType());
+        trailerValues.put(MovieContract.TrailerEntry.COLUMN_FETCHED_AT, fetchedAt);
+
+        return trailerValues;
+    }
+
     public static final Creator<Trailer> CREATOR = new Creator<Trailer>() {
         @Override
         public Trailer createFromParcel(Parcel source) {
@@ -0,0 +1,146 @@
+package com.example.android.movies.sync;
+
+import com.example.android.movies.data.MovieBatch;
+import com.example.android.movies.models.MovieItem;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Streaming parser for the movie list responses of the MovieDB API.
+ * The response is pulled token by token from the socket stream and
+ * every movie goes straight into the columns of the {@link MovieBatch}
+ * written to the provider, without building the whole body as a
+ * String or a JSON tree first, nor an object per movie.
+ * <p>
+ * Like {@link com.example.android.movies.api.results.MovieDetailAdapter},
+ * it reads with the Gson streaming reader, so the sync code parses with
+ * a single reader and this class doesn't depend on the Android framework.
+ *
+ * @author Ali K Thabet
+ */
+public class MovieListParser {
+    // Number of movies in a page of a MovieDB list
+    public static final int PAGE_SIZE = 20;
+
+    // Key of the number of pages of the list in a response
+    private static final String MDB_TOTAL_PAGES = "total_pages";
+
+    /**
+     * A parsed list page: its movies and the number of pages of the list.
+     */
+    public static class Page {
+        private final MovieBatch mMovies;
+        private final int mTotalPages;
+
+        public Page(MovieBatch movies, int totalPages) {
+            mMovies = movies;
+            mTotalPages = totalPages;
+        }
+
+        public MovieBatch getMovies() {
+            return mMovies;
+        }
+
+        /**
+         * @return the number of pages of the list when the page was
+         * fetched, 0 if the response didn't give it
+         */
+        public int getTotalPages() {
+            return mTotalPages;
+        }
+    }
+
+    /**
+     * Parses a list page. Movies without a poster or a title are skipped,
+     * posters are kept as their path relative to the TMDB image URLs.
+     * Every movie gets its rank in the list, counting skipped movies too,
+     * so the ranks of a movie don't depend on the other pages.
+     *
+     * @param in the response body, not closed by this method
+     * @param page number of the page, starting at 1
+     * @return the movies of the page in the order returned by the API,
+     * with the number of pages of the list
+     */
+    public Page parse(InputStream in, int page) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        MovieBatch movies = new MovieBatch(PAGE_SIZE);
+        int totalPages = 0;
+        int rank = (page - 1) * PAGE_SIZE;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (MovieItem.MDB_LIST.equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readMovie(reader, movies, rank);
+                    rank++;
+                }
+                reader.endArray();
+            } else if (MDB_TOTAL_PAGES.equals(name) && reader.peek() == JsonToken.NUMBER) {
+                totalPages = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Page(movies, totalPages);
+    }
+
+    // Reads a single movie object into the batch, unless it cannot be stored
+    private void readMovie(JsonReader reader, MovieBatch movies, int rank) throws IOException {
+        long id = -1;
+        String title = null;
+        String poster = null;
+        String releaseDate = "";
+        String synopsis = MovieItem.NO_SYNOPSIS;
+        double rating = Double.NaN;
+        double popularity = Double.NaN;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case MovieItem.MDB_ID:
+                    id = reader.nextInt();
+                    break;
+                case MovieItem.MDB_TITLE:
+                    title = reader.nextString();
+                    break;
+                case MovieItem.MDB_POSTER:
+                    poster = reader.nextString();
+                    break;
+                case MovieItem.MDB_REL_DATE:
+                    releaseDate = reader.nextString();
+                    break;
+                case MovieItem.MDB_SYNP:
+                    synopsis = reader.nextString();
+                    break;
+                case MovieItem.MDB_RATING:
+                    rating = reader.nextDouble();
+                    break;
+                case MovieItem.MDB_POPULARITY:
+                    popularity = reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // only retrieve movies with a poster, an id and a title
+        if (poster == null || id == -1 || title == null) {
+            return;
+        }
+        movies.add(id, title, releaseDate, rating, popularity, synopsis, poster, null, rank);
+    }
+}
@@ -9,39 +9,41 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.SyncRequest;
 import android.content.SyncResult;
+import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.example.android.movies.BuildConfig;
 import com.example.android.movies.PopularMoviesFragment;
 import com.example.android.movies.R;
 import com.example.android.movies.Utility;
-import com.example.android.movies.api.MovieDBApi;
-import com.example.android.movies.api.results.MovieResults;
-import com.example.android.movies.models.MovieItem;
+import com.example.android.movies.api.MovieDBClient;
+import com.example.android.movies.api.RequestExecutor;
+import com.example.android.movies.api.results.MovieDetailResults;
+import com.example.android.movies.data.MovieBatch;
+import com.example.android.movies.data.MovieContract;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.ResponseBody;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
-
-import retrofit.Call;
-import retrofit.Callback;
-import retrofit.GsonConverterFactory;
-import retrofit.Response;
-import retrofit.Retrofit;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class implements a {@link AbstractThreadedSyncAdapter}
@@ -50,213 +52,558 @@ import retrofit.Retrofit;
  * @author Ali K Thabet
  */
 public class MoviesSyncAdapter extends AbstractThreadedSyncAdapter {
+    // Extras of a single page sync: the page number and the API sort type
     public static final String PAGE_QUERY_EXTRA = "pqe";
+    public static final String SORT_QUERY_EXTRA = "sqe";
+    // Time after which a single page requested and not synced yet
+    // can be requested again, in case its sync never ran
+    private static final long PAGE_REQUEST_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
     // Interval at which to sync with the weather, in seconds.
     // 60 seconds/minute * 60 minutes/hour * 24 hours/day = 1 day (24 hours)
     public static final int SYNC_INTERVAL = 60 * 60 * 24;
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL/3;
+    // Extra of the periodic sync that refreshes the favorite movies. It runs
+    // once a week, apart from the daily sync of the lists.
+    public static final String FAVORITES_SYNC_EXTRA = "fse";
+    public static final int FAVORITES_SYNC_INTERVAL = SYNC_INTERVAL * 7;
+    public static final int FAVORITES_SYNC_FLEXTIME = FAVORITES_SYNC_INTERVAL/3;
+    // Number of favorites fetched before their changes are written
+    private static final int FAVORITES_BATCH_SIZE = 20;
+    // Maximum number of pages fetched at the same time
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
     public final String LOG_TAG = MoviesSyncAdapter.class.getSimpleName();
 
+    // Single pages requested and not synced yet, as "sort/page", with
+    // the elapsed realtime of their request
+    private static final Map<String, Long> sPagesInFlight = new HashMap<>();
+    // Last page of each sort type, from the latest page fetched
+    private static final Map<String, Integer> sLastPages = new HashMap<>();
+
+    // Returned by getData when the page hasn't changed since it was last fetched
+    static final FetchedPage NOT_MODIFIED =
+            new FetchedPage(0, new MovieListParser.Page(new MovieBatch(0), 0), null, null);
+
+    private String mBaseUrl;
+    private final PageValidatorStore mValidators;
+    private final MovieListParser mParser;
+    private final RequestExecutor mExecutor;
+    private final TypeAdapter<MovieDetailResults> mDetailAdapter;
+
     public MoviesSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
+        mBaseUrl = context.getString(R.string.movie_db_base_url);
+        mParser = new MovieListParser();
+        mExecutor = MovieDBClient.getInstance(context).getExecutor();
+        mDetailAdapter = MovieDBClient.getInstance(context).getGson().getAdapter(MovieDetailResults.class);
+        mValidators = new PageValidatorStore(context);
     }
 
-    private void getMoviesFromJsonStr(String movieJsonStr, String sortType)
-            throws JSONException {
+    /**
+     * Fetches and parses one page of a movie list. This runs on the
+     * workers of the fetch pool, so several pages are downloaded and
+     * parsed at the same time. Nothing is written to the database here,
+     * nor are the validators of the response stored: they are only kept
+     * once the movies of the page are written, see {@link #writePages}.
+     * <p>
+     * The request is conditional when the page is stored, so an unchanged
+     * page is answered with a 304 and neither downloaded nor parsed.
+     * Failed requests are retried by the {@link RequestExecutor}, errors
+     * that remain are counted in the sync result.
+     * <p>
+     * Package private so it can be tested against a mock server, see
+     * {@link #setBaseUrl(String)}.
+     *
+     * @return the movies of the page, {@link #NOT_MODIFIED} if the stored
+     * page is still current, or null if the page couldn't be fetched
+     */
+    FetchedPage getData(String sortBy, String apiKey, String pageRequested,
+                        SyncResult syncResult) {
+
+        // The body needs to be declared outside the try/catch
+        // so that it can be closed in the finally block.
+        ResponseBody body = null;
 
-        JSONObject movieJson = new JSONObject(movieJsonStr);
+        try {
+            // Construct the URL for the MovieDB API query
+            // using the API Key and sorting parameters
+            final String MOVIE_BASE_URL = mBaseUrl;
+            final String PAGE_PARAM = getContext().getString(R.string.moviedb_page_param);
+            final String KEY_PARAM = getContext().getString(R.string.moviedb_api_key_param);
 
-        JSONArray movieArray = movieJson.getJSONArray(MovieItem.MDB_LIST);
+            Uri builtUri = Uri.parse(MOVIE_BASE_URL)
+                    .buildUpon().appendPath(sortBy)
+                    .appendQueryParameter(KEY_PARAM, apiKey)
+                    .appendQueryParameter(PAGE_PARAM, pageRequested)
+                    .build();
 
-        // Insert the movie data into the database
-        Vector<ContentValues> cVVector = new Vector<>(movieArray.length());
+            // Create the request to MovieDB API through the shared client.
+            // The validators are only sent if the page is in the database,
+            // otherwise a 304 would leave it missing.
+            final int page = Integer.parseInt(pageRequested);
+            Request.Builder requestBuilder = new Request.Builder()
+                    .url(builtUri.toString());
+            if (isPageStored(sortBy, page)) {
+                String eTag = mValidators.getETag(sortBy, page);
+                String lastModified = mValidators.getLastModified(sortBy, page);
+                if (eTag != null) {
+                    requestBuilder.header("If-None-Match", eTag);
+                }
+                if (lastModified != null) {
+                    requestBuilder.header("If-Modified-Since", lastModified);
+                }
+            }
+            com.squareup.okhttp.Response response = mExecutor.execute(requestBuilder.build());
+            body = response.body();
+            if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Log.d(LOG_TAG, "Page " + pageRequested + " for sort " + sortBy + " not modified");
+                return NOT_MODIFIED;
+            }
+            if (!response.isSuccessful()) {
+                Log.e(LOG_TAG, "Error " + response.code() + " fetching page "
+                        + pageRequested + " for sort " + sortBy);
+                recordHttpError(response, syncResult);
+                return null;
+            }
+
+            // Parse the movies straight from the response stream
+            Log.d(LOG_TAG, "Syncing page " + pageRequested + " for sort " + sortBy);
+            MovieListParser.Page movies;
+            try {
+                movies = mParser.parse(body.byteStream(), page);
+            } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+                // the body is not a list page or holds a malformed number,
+                // fetching it again won't help
+                Log.e(LOG_TAG, "Error parsing page " + pageRequested + " for sort " + sortBy, e);
+                synchronized (syncResult) {
+                    syncResult.stats.numParseExceptions++;
+                }
+                return null;
+            }
+            setLastPage(sortBy, page, movies);
+            return new FetchedPage(page, movies, response.header("ETag"), response.header("Last-Modified"));
+        } catch (IOException e) {
+            // Network error left after the retries, the sync can be retried later.
+            // If the code couldn't get the movie data then no need to go on
+            Log.e(LOG_TAG, "Error ", e);
+            synchronized (syncResult) {
+                syncResult.stats.numIoExceptions++;
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (body != null) {
+                try {
+                    body.close();
+                } catch (final IOException e) {
+                    Log.e(LOG_TAG, "Error closing stream", e);
+                }
+            }
+        }
+    }
+
+    // Records a failed response in the sync result, so the framework knows
+    // whether to retry the sync and how long to wait before it does
+    private static void recordHttpError(com.squareup.okhttp.Response response, SyncResult syncResult) {
+        synchronized (syncResult) {
+            if (response.code() == HttpURLConnection.HTTP_UNAUTHORIZED) {
+                // invalid API key, retrying won't help
+                syncResult.stats.numAuthExceptions++;
+            } else if (RequestExecutor.isRetryable(response.code())) {
+                syncResult.stats.numIoExceptions++;
+                long retryAfter = RequestExecutor.getRetryAfter(response);
+                if (retryAfter > 0) {
+                    long delayUntil = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() + retryAfter);
+                    syncResult.delayUntil = Math.max(syncResult.delayUntil, delayUntil);
+                }
+            }
+        }
+    }
 
-        // The JSON object returns a list of the most popular movies
-        // and for each movie provides some useful information. We are
-        // interested in id, tile, poster and thumbnail, synopsis,
-        // release date, and popularity rating. The poster and thumbnail
-        // are in relative format so we need to add
-        // "http://image.tmdb.org/t/p/w185" to get the absolute URL
-        // We will store the results of the MDB
-        // in a Lis of <em>MovieItem</em> objects
+    @Override
+    public void onPerformSync(Account account, Bundle extras, String authority, ContentProviderClient provider, final SyncResult syncResult) {
+        if (extras.getBoolean(FAVORITES_SYNC_EXTRA)) {
+            syncFavorites(syncResult);
+            return;
+        }
+        if (extras.containsKey(PAGE_QUERY_EXTRA)) {
+            syncSinglePage(extras.getString(SORT_QUERY_EXTRA), extras.getInt(PAGE_QUERY_EXTRA), syncResult);
+            return;
+        }
 
-        for (int i = 0; i < movieArray.length(); i++) {
+        // the full sync fetches the first pages again, so the
+        // requests of single pages that never ran are dropped
+        synchronized (sPagesInFlight) {
+            sPagesInFlight.clear();
+        }
 
-            MovieItem temp = new MovieItem();
+        int pagesRequested = PopularMoviesFragment.MAX_PAGES;
+        final String apiKey = BuildConfig.MOVIE_DB_API_KEY;
 
-            JSONObject movie = movieArray.getJSONObject(i); // get the current movie data
-            temp.setId(movie.getInt(MovieItem.MDB_ID)); // movie id
-            temp.setTitle(movie.getString(MovieItem.MDB_TITLE)); // original title
+        String[] sortByArray = {getContext().getString(R.string.pref_sort_popular_api),
+                getContext().getString(R.string.pref_sort_rated_api)};
 
-            // only retrieve movies with a poster
-            if (movie.getString(MovieItem.MDB_POSTER).equals("null")) {
-                continue;
+        // Pages are fetched and parsed by a bounded pool of workers, so
+        // the time of a sync depends on MAX_CONCURRENT_REQUESTS and not
+        // on the number of pages. All pages of both lists are queued up
+        // front to keep the workers busy while the lists are written.
+        ExecutorService fetchPool = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
+        try {
+            List<List<Future<FetchedPage>>> pagesBySort = new ArrayList<>(sortByArray.length);
+            for (final String sortBy : sortByArray) {
+                List<Future<FetchedPage>> pages = new ArrayList<>(pagesRequested);
+                for (int i = 1; i <= pagesRequested; i++) {
+                    final String page = String.valueOf(i);
+                    pages.add(fetchPool.submit(new Callable<FetchedPage>() {
+                        @Override
+                        public FetchedPage call() {
+                            return getData(sortBy, apiKey, page, syncResult);
+                        }
+                    }));
+                }
+                pagesBySort.add(pages);
             }
-            temp.setPosterPath(getContext().getString(R.string.poster_url)
-                    + movie.getString(MovieItem.MDB_POSTER)); // URL to poster
 
-            temp.setReleaseDate(movie.getString(MovieItem.MDB_REL_DATE)); // release date
-            temp.setSynopsis(movie.getString(MovieItem.MDB_SYNP)); // synopsis
-            temp.setRating(movie.getDouble(MovieItem.MDB_RATING)); // get user rating
-            temp.setPopularity(movie.getDouble(MovieItem.MDB_POPULARITY)); // get the movie popularity
+            // Writer stage: wait for the pages of each list in page order
+            // and write the whole list in a single provider transaction
+            for (int i = 0; i < sortByArray.length; i++) {
+                for (List<FetchedPage> run : collectPages(pagesBySort.get(i))) {
+                    writePages(sortByArray[i], run, syncResult);
+                }
+            }
 
-            cVVector.add(temp.getContentValues()); // Add the ContentValue of retrieved movie
+            // Fold the log of the sync back into the database now, instead
+            // of on some later commit made while the UI is reading
+            getContext().getContentResolver().call(MovieContract.BASE_CONTENT_URI,
+                    MovieContract.METHOD_CHECKPOINT, MovieContract.CHECKPOINT_PASSIVE, null);
+        } catch (InterruptedException e) {
+            Log.e(LOG_TAG, "Sync interrupted", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            fetchPool.shutdownNow();
         }
+    }
 
-        // add to database
-        if ( cVVector.size() > 0 ) {
-            ContentValues[] cvArray = new ContentValues[cVVector.size()];
-            cVVector.toArray(cvArray);
-            getContext().getContentResolver().bulkInsert(Utility.getUriFromAPISort(getContext(), sortType), cvArray);
+    // Refreshes the stored data of the favorite movies. Their details are
+    // fetched by the pool, under the shared rate limiter, in batches whose
+    // changed columns are written in a single transaction each.
+    private void syncFavorites(final SyncResult syncResult) {
+        final String apiKey = BuildConfig.MOVIE_DB_API_KEY;
+        List<Long> ids = getFavoriteIds();
+
+        ExecutorService fetchPool = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
+        try {
+            for (int start = 0; start < ids.size(); start += FAVORITES_BATCH_SIZE) {
+                List<Future<ContentValues>> batch = new ArrayList<>(FAVORITES_BATCH_SIZE);
+                for (final Long id : ids.subList(start, Math.min(ids.size(), start + FAVORITES_BATCH_SIZE))) {
+                    batch.add(fetchPool.submit(new Callable<ContentValues>() {
+                        @Override
+                        public ContentValues call() {
+                            return getDetails(id, apiKey, syncResult);
+                        }
+                    }));
+                }
+
+                MovieBatch movies = new MovieBatch(batch.size());
+                for (Future<ContentValues> movie : batch) {
+                    try {
+                        ContentValues values = movie.get();
+                        if (values != null) {
+                            movies.add(values);
+                        }
+                    } catch (ExecutionException e) {
+                        Log.e(LOG_TAG, "Error fetching favorite", e.getCause());
+                    }
+                }
+                updateFavorites(movies, syncResult);
+            }
+        } catch (InterruptedException e) {
+            Log.e(LOG_TAG, "Favorites sync interrupted", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            fetchPool.shutdownNow();
         }
     }
 
-    private boolean getData(String sortBy, String apiKey, String pageRequested) {
-
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
+    private List<Long> getFavoriteIds() {
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = getContext().getContentResolver().query(MovieContract.MovieFavoriteEntry.CONTENT_URI,
+                new String[]{MovieContract.MovieFavoriteEntry._ID}, null, null, null);
+        if (cursor == null) {
+            return ids;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
 
-        // Will contain the raw JSON response as a string.
-        String moviesJsonStr = null;
+    /**
+     * Fetches and parses the details of a movie, like {@link #getData}
+     * does for a list page.
+     *
+     * @return the values of the movie, or null if it couldn't be fetched
+     */
+    private ContentValues getDetails(long id, String apiKey, SyncResult syncResult) {
+        ResponseBody body = null;
 
         try {
-            // Construct the URL for the MovieDB API query
-            // using the API Key and sorting parameters
-            final String MOVIE_BASE_URL = getContext().getString(R.string.movie_db_base_url);
-            final String SORT_PARAM = getContext().getString(R.string.moviedb_sort_param);
-            final String PAGE_PARAM = getContext().getString(R.string.moviedb_page_param);
             final String KEY_PARAM = getContext().getString(R.string.moviedb_api_key_param);
-
-            Uri builtUri = Uri.parse(MOVIE_BASE_URL)
-                    .buildUpon().appendPath(sortBy)
-//                    .appendQueryParameter(SORT_PARAM, sortBy)
+            Uri builtUri = Uri.parse(mBaseUrl)
+                    .buildUpon().appendPath(String.valueOf(id))
                     .appendQueryParameter(KEY_PARAM, apiKey)
-                    .appendQueryParameter(PAGE_PARAM, pageRequested)
                     .build();
 
-            URL url = new URL(builtUri.toString());
-
-            // Create the request to MovieDB API, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
-                // Nothing to do.
-                return false;
-            }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Adding new line not completely necessary for JSON
-                // but helps with debugging.
-                buffer.append(line + "\n");
+            com.squareup.okhttp.Response response = mExecutor.execute(
+                    new Request.Builder().url(builtUri.toString()).build());
+            body = response.body();
+            if (!response.isSuccessful()) {
+                Log.e(LOG_TAG, "Error " + response.code() + " fetching favorite " + id);
+                recordHttpError(response, syncResult);
+                return null;
             }
 
-            if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
-                return false;
+            MovieDetailResults details;
+            try {
+                details = mDetailAdapter.read(new JsonReader(body.charStream()));
+            } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+                Log.e(LOG_TAG, "Error parsing favorite " + id, e);
+                synchronized (syncResult) {
+                    syncResult.stats.numParseExceptions++;
+                }
+                return null;
             }
-            moviesJsonStr = buffer.toString();
-            Log.d(LOG_TAG, "Syncing for sort " + sortBy);
-            getMoviesFromJsonStr(moviesJsonStr, sortBy);
+            return details == null ? null : details.getMovieValues();
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error ", e);
-            // if the code couldn't get the movie data then no need
-            // to parse it
-            return false;
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-        }finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+            synchronized (syncResult) {
+                syncResult.stats.numIoExceptions++;
             }
-            if (reader != null) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (body != null) {
                 try {
-                    reader.close();
+                    body.close();
                 } catch (final IOException e) {
                     Log.e(LOG_TAG, "Error closing stream", e);
                 }
             }
         }
+    }
 
-        return true;
+    // Writes the changed columns of the favorites and adds
+    // the numbers of rows skipped and updated to the stats
+    private void updateFavorites(MovieBatch movies, SyncResult syncResult) {
+        if (movies.size() == 0) {
+            return;
+        }
+        Bundle extras = new Bundle();
+        movies.writeTo(extras);
+        Bundle stats = getContext().getContentResolver().call(MovieContract.BASE_CONTENT_URI,
+                MovieContract.METHOD_UPDATE_MOVIES,
+                MovieContract.MovieFavoriteEntry.CONTENT_URI.toString(),
+                extras);
+        if (stats != null) {
+            syncResult.stats.numEntries += stats.getInt(MovieContract.STAT_FETCHED);
+            syncResult.stats.numSkippedEntries += stats.getInt(MovieContract.STAT_UNCHANGED);
+            syncResult.stats.numUpdates += stats.getInt(MovieContract.STAT_UPDATED);
+            Log.d(LOG_TAG, "Favorites synced: " + stats);
+        }
     }
 
     @Override
-    public void onPerformSync(Account account, Bundle extras, String authority, ContentProviderClient provider, SyncResult syncResult) {
-        String pagesRequested = String.valueOf(PopularMoviesFragment.MAX_PAGES);
-        String apiKey = BuildConfig.MOVIE_DB_API_KEY;
-
-        String[] sortByArray = {getContext().getString(R.string.pref_sort_popular_api),
-                getContext().getString(R.string.pref_sort_rated_api)};
+    public void onSyncCanceled() {
+        // a canceled single page sync may not have started, its page can be
+        // requested again. Other pages requested meanwhile are at most synced twice.
+        synchronized (sPagesInFlight) {
+            sPagesInFlight.clear();
+        }
+        super.onSyncCanceled();
+    }
 
-        // Sync for both popular movies and user rating
-        // for all pages specified in PopularMoviesFragment.MAX_PAGES
-        for (String sortBy : sortByArray) {
-            // fetch all the movies from pages 1 to pagesRequested
-            for (int i = 1; i <= Integer.parseInt(pagesRequested); i++) {
-//                getMovies(sortBy, String.valueOf(i));
-                getData(sortBy, apiKey, String.valueOf(i));
+    // Fetches and writes one page of a list, requested while scrolling.
+    // Package private so it can be tested against a mock server.
+    void syncSinglePage(String sortBy, int page, SyncResult syncResult) {
+        try {
+            FetchedPage fetched = getData(sortBy, BuildConfig.MOVIE_DB_API_KEY,
+                    String.valueOf(page), syncResult);
+            if (fetched != null && fetched != NOT_MODIFIED) {
+                writePages(sortBy, Collections.singletonList(fetched), syncResult);
+            }
+        } finally {
+            synchronized (sPagesInFlight) {
+                sPagesInFlight.remove(sortBy + "/" + page);
             }
         }
-
-        // TODO: Update data for favorite movies
     }
 
-    // Retrofit implementation (not used at the moment)
-    private void getMovies(final String sortBy, String pageNumber) {
-        Map<String, String> queryMap = new HashMap<>();
-        queryMap.put(getContext().getString(R.string.moviedb_sort_param),
-                sortBy);
-
-        queryMap.put(getContext().getString(R.string.moviedb_api_key_param),
-                BuildConfig.MOVIE_DB_API_KEY);
-
-        queryMap.put(getContext().getString(R.string.moviedb_page_param),
-                pageNumber);
-
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(MovieDBApi.BASE_URL)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
-
-        MovieDBApi service = retrofit.create(MovieDBApi.class);
-        Call<MovieResults> call = service.getMovieResults(sortBy, BuildConfig.MOVIE_DB_API_KEY);
-        call.enqueue(new Callback<MovieResults>() {
-            private final String SORT_BY = sortBy;
-            @Override
-            public void onResponse(Response<MovieResults> response, Retrofit retrofit) {
-                MovieResults movieResults = response.body();
-                if (movieResults == null) return;
-
-                List<MovieItem> movieList = movieResults.results;
-                Vector<ContentValues> cVVector = new Vector<>(movieList.size());
-
-                for (MovieItem mv : movieList) {
-                    cVVector.add(mv.getContentValues());
-                }
+    // Records the last page of the list given by a fetched page. The
+    // list grows and shrinks, so the latest response always wins.
+    private static void setLastPage(String sortBy, int page, MovieListParser.Page movies) {
+        int lastPage = movies.getTotalPages();
+        if (lastPage <= 0 && movies.getMovies().size() == 0) {
+            // no page count, but an empty page is past the end
+            lastPage = page - 1;
+        }
+        if (lastPage > 0) {
+            synchronized (sPagesInFlight) {
+                sLastPages.put(sortBy, lastPage);
+            }
+        }
+    }
 
-                // add to database
-                if ( cVVector.size() > 0 ) {
-                    ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                    cVVector.toArray(cvArray);
-                    getContext().getContentResolver().bulkInsert(Utility.getUriFromAPISort(getContext(), SORT_BY), cvArray);
-                }
+    // Waits for all the pages of a list and groups them in page order, into
+    // runs of consecutive pages to write. Pages that failed to download or
+    // that were not modified end a run: a write replaces the range of ranks
+    // it covers, which must not include the stored movies of those pages.
+    private List<List<FetchedPage>> collectPages(List<Future<FetchedPage>> pages)
+            throws InterruptedException {
+        List<List<FetchedPage>> runs = new ArrayList<>();
+        List<FetchedPage> run = new ArrayList<>(pages.size());
+        for (Future<FetchedPage> page : pages) {
+            FetchedPage fetched = null;
+            try {
+                fetched = page.get();
+            } catch (ExecutionException e) {
+                Log.e(LOG_TAG, "Error fetching page", e.getCause());
             }
+            if (fetched != null && fetched != NOT_MODIFIED) {
+                run.add(fetched);
+            } else if (!run.isEmpty()) {
+                runs.add(run);
+                run = new ArrayList<>(pages.size());
+            }
+        }
+        if (!run.isEmpty()) {
+            runs.add(run);
+        }
+        return runs;
+    }
 
-            @Override
-            public void onFailure(Throwable t) {
-                Log.e(LOG_TAG, "Error loading review: " + t.getMessage());
+    // Whether the database holds all the movies written from the page of the
+    // list. A page missing some of them is fetched again without validators,
+    // a 304 would leave them missing.
+    private boolean isPageStored(String sortBy, int page) {
+        int movieCount = mValidators.getMovieCount(sortBy, page);
+        if (movieCount == 0) {
+            return false;
+        }
+        final int pageSize = MovieListParser.PAGE_SIZE;
+        Uri pageUri = MovieContract.buildListPageUri(Utility.getUriFromAPISort(getContext(), sortBy),
+                (page - 1) * pageSize - 1, pageSize);
+        Cursor cursor = getContext().getContentResolver().query(pageUri,
+                new String[]{MovieContract.MovieListEntry.COLUMN_RANK}, null, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            int stored = 0;
+            while (cursor.moveToNext() && cursor.getLong(0) < page * pageSize) {
+                stored++;
             }
-        });
+            return stored == movieCount;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Writes consecutive pages of a list in one transaction, then stores
+    // their validators. Validators of a page whose write failed are never
+    // stored, so it isn't answered with a 304 while it is missing.
+    private void writePages(String sortBy, List<FetchedPage> pages, SyncResult syncResult) {
+        MovieBatch movies = new MovieBatch(pages.size() * MovieListParser.PAGE_SIZE);
+        for (FetchedPage page : pages) {
+            movies.addAll(page.getMovies());
+        }
+        if (!writeMovies(sortBy, movies, syncResult)) {
+            return;
+        }
+        for (FetchedPage page : pages) {
+            mValidators.put(sortBy, page.getNumber(), page.getETag(), page.getLastModified(),
+                    page.getMovies().size());
+        }
+    }
+
+    // Writes the movies of a list as a delta of what is stored, and adds
+    // the numbers of rows skipped, updated, inserted and removed to the stats.
+    // Returns whether the movies were written.
+    private boolean writeMovies(String sortBy, MovieBatch movies, SyncResult syncResult) {
+        if (movies.size() == 0) {
+            return false;
+        }
+        // add to database
+        Bundle extras = new Bundle();
+        movies.writeTo(extras);
+        Bundle stats = getContext().getContentResolver().call(MovieContract.BASE_CONTENT_URI,
+                MovieContract.METHOD_SYNC_LIST,
+                Utility.getUriFromAPISort(getContext(), sortBy).toString(),
+                extras);
+        if (stats == null) {
+            return false;
+        }
+        syncResult.stats.numEntries += stats.getInt(MovieContract.STAT_FETCHED);
+        syncResult.stats.numSkippedEntries += stats.getInt(MovieContract.STAT_UNCHANGED);
+        syncResult.stats.numUpdates += stats.getInt(MovieContract.STAT_UPDATED);
+        syncResult.stats.numInserts += stats.getInt(MovieContract.STAT_INSERTED);
+        syncResult.stats.numDeletes += stats.getInt(MovieContract.STAT_REMOVED);
+        Log.d(LOG_TAG, sortBy + " synced: " + stats);
+        return true;
+    }
+
+    /**
+     * A list page fetched by {@link #getData}, with the validators of its
+     * response, stored once its movies are written.
+     */
+    static class FetchedPage {
+        private final int mNumber;
+        private final MovieListParser.Page mPage;
+        private final String mETag;
+        private final String mLastModified;
+
+        FetchedPage(int number, MovieListParser.Page page, String eTag, String lastModified) {
+            mNumber = number;
+            mPage = page;
+            mETag = eTag;
+            mLastModified = lastModified;
+        }
+
+        int getNumber() {
+            return mNumber;
+        }
+
+        MovieBatch getMovies() {
+            return mPage.getMovies();
+        }
+
+        int getTotalPages() {
+            return mPage.getTotalPages();
+        }
+
+        String getETag() {
+            return mETag;
+        }
+
+        String getLastModified() {
+            return mLastModified;
+        }
+    }
+
+    /**
+     * Overrides the base URL of the list requests. Mainly useful to run
+     * the sync against a local mock server.
+     *
+     * @param baseUrl URL to which the sort type and page are appended
+     */
+    public void setBaseUrl(String baseUrl) {
+        mBaseUrl = baseUrl;
     }
 
     /**
@@ -271,10 +618,55 @@ public class MoviesSyncAdapter extends AbstractThreadedSyncAdapter {
                 context.getString(R.string.content_authority), bundle);
     }
 
+    /**
+     * Helper method to sync a single page of a list immediately. Pages
+     * already requested and not synced yet are not requested again, for
+     * {@link #PAGE_REQUEST_TIMEOUT}, nor are pages past the last page
+     * given by the latest response for the list.
+     *
+     * @param context The context used to access the account service
+     * @param sortBy The API sort type of the list
+     * @param page The page to sync, starting at 1
+     * @return true if the sync was requested
+     */
+    public static boolean syncPage(Context context, String sortBy, int page) {
+        synchronized (sPagesInFlight) {
+            Integer lastPage = sLastPages.get(sortBy);
+            if (page < 1 || (lastPage != null && page > lastPage)) {
+                return false;
+            }
+            String key = sortBy + "/" + page;
+            Long requestedAt = sPagesInFlight.get(key);
+            long now = SystemClock.elapsedRealtime();
+            if (requestedAt != null && now - requestedAt < PAGE_REQUEST_TIMEOUT) {
+                return false;
+            }
+            sPagesInFlight.put(key, now);
+        }
+
+        Bundle bundle = new Bundle();
+        bundle.putBoolean(ContentResolver.SYNC_EXTRAS_EXPEDITED, true);
+        bundle.putBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, true);
+        bundle.putString(SORT_QUERY_EXTRA, sortBy);
+        bundle.putInt(PAGE_QUERY_EXTRA, page);
+        ContentResolver.requestSync(getSyncAccount(context),
+                context.getString(R.string.content_authority), bundle);
+        return true;
+    }
+
     /**
      * Helper method to schedule the sync adapter periodic execution
      */
     public static void configurePeriodicSync(Context context, int syncInterval, int flexTime) {
+        configurePeriodicSync(context, syncInterval, flexTime, new Bundle());
+    }
+
+    /**
+     * Helper method to schedule a periodic execution of the sync adapter
+     * with the given extras. Periodic syncs with different extras are
+     * scheduled independently of each other.
+     */
+    public static void configurePeriodicSync(Context context, int syncInterval, int flexTime, Bundle extras) {
         Account account = getSyncAccount(context);
         String authority = context.getString(R.string.content_authority);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
@@ -282,11 +674,11 @@ public class MoviesSyncAdapter extends AbstractThreadedSyncAdapter {
             SyncRequest request = new SyncRequest.Builder().
                     syncPeriodic(syncInterval, flexTime).
                     setSyncAdapter(account, authority).
-                    setExtras(new Bundle()).build();
+                    setExtras(extras).build();
             ContentResolver.requestSync(request);
         } else {
             ContentResolver.addPeriodicSync(account,
-                    authority, new Bundle(), syncInterval);
+                    authority, extras, syncInterval);
         }
     }
 
@@ -339,5 +731,11 @@ public class MoviesSyncAdapter extends AbstractThreadedSyncAdapter {
 
     public static void initializeSyncAdapter(Context context) {
         getSyncAccount(context);
+
+        // scheduled here and not only on account creation, so existing
+        // accounts get it too. Scheduling it again only updates it.
+        Bundle favoritesExtras = new Bundle();
+        favoritesExtras.putBoolean(FAVORITES_SYNC_EXTRA, true);
+        configurePeriodicSync(context, FAVORITES_SYNC_INTERVAL, FAVORITES_SYNC_FLEXTIME, favoritesExtras);
     }
 }
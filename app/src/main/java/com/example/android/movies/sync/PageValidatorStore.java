@@ -0,0 +1,72 @@
+package com.example.android.movies.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Persistent store of the cache validators (ETag and Last-Modified)
+ * of the list pages downloaded by the sync, keyed by (sort, page).
+ * They are sent back with the next request of the page, so the API
+ * can answer with a 304 when the page hasn't changed. The number of
+ * movies written from the page is kept with them, so the sync can
+ * tell whether the page is still whole in the database.
+ *
+ * @author Ali K Thabet
+ */
+public class PageValidatorStore {
+    private static final String PREFS_NAME = "page_validators";
+
+    private static final String ETAG_SUFFIX = "/etag";
+    private static final String LAST_MODIFIED_SUFFIX = "/last_modified";
+    private static final String MOVIE_COUNT_SUFFIX = "/movie_count";
+
+    private final SharedPreferences mPrefs;
+
+    public PageValidatorStore(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return the ETag of the page, null if none is stored
+     */
+    public String getETag(String sortBy, int page) {
+        return mPrefs.getString(getKey(sortBy, page) + ETAG_SUFFIX, null);
+    }
+
+    /**
+     * @return the Last-Modified date of the page, null if none is stored
+     */
+    public String getLastModified(String sortBy, int page) {
+        return mPrefs.getString(getKey(sortBy, page) + LAST_MODIFIED_SUFFIX, null);
+    }
+
+    /**
+     * @return the number of movies written from the page, 0 if unknown
+     */
+    public int getMovieCount(String sortBy, int page) {
+        return mPrefs.getInt(getKey(sortBy, page) + MOVIE_COUNT_SUFFIX, 0);
+    }
+
+    /**
+     * Stores the validators of a page once its movies are written,
+     * replacing the previous ones. A null validator removes the stored one.
+     *
+     * @param movieCount number of movies of the page written to the database
+     */
+    public void put(String sortBy, int page, String eTag, String lastModified, int movieCount) {
+        String key = getKey(sortBy, page);
+        mPrefs.edit()
+                .putString(key + ETAG_SUFFIX, eTag)
+                .putString(key + LAST_MODIFIED_SUFFIX, lastModified)
+                .putInt(key + MOVIE_COUNT_SUFFIX, movieCount)
+                .apply();
+    }
+
+    public void remove(String sortBy, int page) {
+        put(sortBy, page, null, null, 0);
+    }
+
+    private static String getKey(String sortBy, int page) {
+        return sortBy + "/" + page;
+    }
+}
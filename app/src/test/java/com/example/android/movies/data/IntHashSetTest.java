@@ -0,0 +1,187 @@
+package com.example.android.movies.data;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the probing of {@link IntHashSet}: values sharing a slot, the
+ * backward shift of the values following a removed one, including runs
+ * wrapping around the end of the table, and the growth of the table.
+ *
+ * @author Ali K Thabet
+ */
+public class IntHashSetTest {
+    // Slots of a new set, which holds 8 values before it grows
+    private static final int MIN_CAPACITY = 16;
+
+    @Test
+    public void collidingValuesAreAllFound() {
+        int[] values = findValuesAt(3, 5);
+        IntHashSet set = new IntHashSet();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(set.add(values[i]));
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue("Value " + i, set.contains(values[i]));
+            assertFalse("Value " + i + " added twice", set.add(values[i]));
+        }
+        // probed to the end of the run, not found
+        assertFalse(set.contains(values[4]));
+        assertEquals(4, set.size());
+    }
+
+    @Test
+    public void removeShiftsBackTheRun() {
+        int[] values = findValuesAt(3, 4);
+        IntHashSet set = new IntHashSet();
+        for (int value : values) {
+            set.add(value);
+        }
+
+        // the hole left by the first value must not cut off the others
+        assertTrue(set.remove(values[0]));
+        assertFalse(set.contains(values[0]));
+        for (int i = 1; i < values.length; i++) {
+            assertTrue("Value " + i, set.contains(values[i]));
+        }
+
+        assertTrue(set.remove(values[2]));
+        assertTrue(set.contains(values[1]));
+        assertTrue(set.contains(values[3]));
+        assertFalse(set.remove(values[2]));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void removeKeepsValuesAtTheirHome() {
+        // values of slot 3 take slots 3 and 4, the value of slot 5 its
+        // own slot, and the last value of slot 3 is pushed to slot 6
+        int[] values = findValuesAt(3, 3);
+        int other = findValuesAt(5, 1)[0];
+        IntHashSet set = new IntHashSet();
+        set.add(values[0]);
+        set.add(values[1]);
+        set.add(other);
+        set.add(values[2]);
+
+        // the value of slot 5 stays, the others move past it
+        assertTrue(set.remove(values[0]));
+        assertTrue(set.contains(values[1]));
+        assertTrue(set.contains(values[2]));
+        assertTrue(set.contains(other));
+
+        assertTrue(set.remove(other));
+        assertTrue(set.contains(values[1]));
+        assertTrue(set.contains(values[2]));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void removeShiftsBackARunWrappingAround() {
+        // a value of the last slot takes slot 15, the value of slot 0 its
+        // own slot, and the next value of the last slot is pushed to slot 1
+        int[] last = findValuesAt(MIN_CAPACITY - 1, 2);
+        int first = findValuesAt(0, 1)[0];
+        IntHashSet set = new IntHashSet();
+        set.add(last[0]);
+        set.add(first);
+        set.add(last[1]);
+
+        // the value of slot 0 stays, the other one moves back to slot 15
+        assertTrue(set.remove(last[0]));
+        assertTrue(set.contains(first));
+        assertTrue(set.contains(last[1]));
+
+        assertTrue(set.remove(first));
+        assertTrue(set.contains(last[1]));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void resizeKeepsEveryValue() {
+        IntHashSet set = new IntHashSet();
+        for (int value = 1; value <= 1000; value++) {
+            assertTrue(set.add(value));
+        }
+
+        assertEquals(1000, set.size());
+        for (int value = 1; value <= 1000; value++) {
+            assertTrue("Value " + value, set.contains(value));
+        }
+        assertFalse(set.contains(1001));
+        assertFalse(set.contains(-1));
+    }
+
+    @Test
+    public void zeroIsStoredApart() {
+        IntHashSet set = new IntHashSet();
+        assertFalse(set.contains(0));
+
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        set.add(1);
+        assertTrue(set.contains(0));
+        assertEquals(2, set.size());
+
+        assertTrue(set.remove(0));
+        assertFalse(set.remove(0));
+        assertFalse(set.contains(0));
+        assertTrue(set.contains(1));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void clearEmptiesTheSet() {
+        IntHashSet set = new IntHashSet();
+        for (int value = 0; value < 100; value++) {
+            set.add(value);
+        }
+
+        set.clear();
+
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(50));
+        assertTrue(set.add(50));
+    }
+
+    @Test
+    public void matchesHashSetUnderChurn() {
+        // few distinct values, so most adds and removes hit stored ones
+        Random random = new Random(42);
+        IntHashSet set = new IntHashSet();
+        Set<Integer> expected = new HashSet<>();
+        for (int op = 0; op < 100000; op++) {
+            int value = random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                assertEquals("Remove " + value, expected.remove(value), set.remove(value));
+            } else {
+                assertEquals("Add " + value, expected.add(value), set.add(value));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (int value = 0; value < 300; value++) {
+            assertEquals("Value " + value, expected.contains(value), set.contains(value));
+        }
+    }
+
+    // Returns count positive values whose home is the slot, in a new set
+    private static int[] findValuesAt(int slot, int count) {
+        int[] values = new int[count];
+        int found = 0;
+        for (int value = 1; found < count; value++) {
+            if ((IntHashSet.hash(value) & (MIN_CAPACITY - 1)) == slot) {
+                values[found++] = value;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.android.movies.sync;
+
+import com.example.android.movies.data.MovieBatch;
+import com.example.android.movies.models.MovieItem;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Parses a recorded page of the popular list. The fixture is the second
+ * page, so the ranks start at 20, and its tenth movie has no poster.
+ *
+ * @author Ali K Thabet
+ */
+public class MovieListParserTest {
+    private static final String FIXTURE = "/fixtures/popular_page_2.json";
+    private static final int PAGE = 2;
+    private static final int TOTAL_PAGES = 12458;
+
+    // Movies of the fixture in page order, without the one missing a poster
+    private static final long[] IDS = {
+            286217, 211672, 76341, 135397, 102899, 253412, 150540, 294254, 159824,
+            87101, 273481, 257211, 99861, 177677, 166424, 254128, 298312, 261023, 157336
+    };
+
+    // Their ranks: the movie skipped still takes rank 29
+    private static final long[] RANKS = {
+            20, 21, 22, 23, 24, 25, 26, 27, 28,
+            30, 31, 32, 33, 34, 35, 36, 37, 38, 39
+    };
+
+    // Their content hashes. These are stored in the database, a change
+    // here means every movie is rewritten by the next sync.
+    private static final long[] HASHES = {
+            -4798974218138614511L, -2404846835609349258L, -3096996771145556412L,
+            -4638809077625824602L, -1119497561528078286L, -6792313255627201850L,
+            4901107969537663500L, 8495436339944114504L, 1422903465257153838L,
+            3090256959060016970L, -5866835786844649675L, -7035237374600351126L,
+            1354656669749595192L, -5590884776428776629L, 4274681074462992069L,
+            -1079302879860803169L, 8976709357859432382L, -7532181173838629845L,
+            2512286669617290316L
+    };
+
+    @Test
+    public void parsesEveryMovieWithAPoster() throws IOException {
+        MovieBatch movies = parseFixture();
+
+        assertEquals(IDS.length, movies.size());
+        for (int row = 0; row < movies.size(); row++) {
+            assertEquals("Id of row " + row, IDS[row], movies.getId(row));
+        }
+    }
+
+    @Test
+    public void ranksFollowThePage() throws IOException {
+        MovieBatch movies = parseFixture();
+
+        for (int row = 0; row < movies.size(); row++) {
+            assertEquals("Rank of row " + row, RANKS[row], movies.getRank(row));
+        }
+    }
+
+    @Test
+    public void hashesMatchTheRecordedOnes() throws IOException {
+        MovieBatch movies = parseFixture();
+
+        for (int row = 0; row < movies.size(); row++) {
+            assertEquals("Hash of row " + row, HASHES[row], movies.computeHash(row));
+        }
+    }
+
+    @Test
+    public void readsTheStoredColumns() throws IOException {
+        MovieBatch movies = parseFixture();
+
+        assertEquals("The Martian", movies.getTitle(0));
+        assertEquals("2015-10-02", movies.getReleaseDate(0));
+        assertEquals(7.6, movies.getRating(0), 0);
+        assertEquals("/h8oOOL8dKLzdocJ2isAjIhKtJ0R.jpg", movies.getPoster(0));
+        // Everest has a null overview
+        assertEquals(MovieItem.NO_SYNOPSIS, movies.getSynopsis(5));
+    }
+
+    @Test
+    public void readsTheNumberOfPages() throws IOException {
+        assertEquals(TOTAL_PAGES, parsePage().getTotalPages());
+    }
+
+    private MovieBatch parseFixture() throws IOException {
+        return parsePage().getMovies();
+    }
+
+    private MovieListParser.Page parsePage() throws IOException {
+        InputStream in = getClass().getResourceAsStream(FIXTURE);
+        assertNotNull("Missing fixture " + FIXTURE, in);
+        try {
+            return new MovieListParser().parse(in, PAGE);
+        } finally {
+            in.close();
+        }
+    }
+}